@@ -15,6 +15,8 @@ plugins {
 
     id("nebula.javadoc-jar") version "18.4.0"
     id("nebula.source-jar") version "18.4.0"
+
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 apply(plugin = "nebula.publish-verification")
@@ -66,6 +68,21 @@ dependencies {
 
     testImplementation("org.openrewrite:rewrite-test")
     testImplementation("org.assertj:assertj-core:latest.release")
+
+    jmhImplementation("org.openrewrite:rewrite-java")
+    jmhRuntimeOnly("org.openrewrite:rewrite-java-17")
+}
+
+// Flight Recorder events need Java 11, and are compiled apart from the Java 8 main source set. PhaseEvents loads them
+// when they are on the classpath.
+val jfr by sourceSets.creating {
+    compileClasspath += sourceSets["main"].output + sourceSets["main"].compileClasspath
+}
+
+sourceSets["test"].runtimeClasspath += jfr.output
+
+tasks.jar {
+    from(jfr.output)
 }
 
 tasks.named<Test>("test") {
@@ -73,6 +90,23 @@ tasks.named<Test>("test") {
     jvmArgs = listOf("-XX:+UnlockDiagnosticVMOptions", "-XX:+ShowHiddenFrames")
 }
 
+// Run with `./gradlew jmh`. Allocation rates are reported by the gc profiler alongside throughput.
+jmh {
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
+
+// Run with `./gradlew batch --args="--source path/to/src/main/java --output diff"`. See BatchDriver for every option.
+tasks.register<JavaExec>("batch") {
+    group = "application"
+    description = "Runs MakeFalseInstanceMethodsStatic over a source tree."
+    classpath = sourceSets["main"].runtimeClasspath + jfr.output
+    mainClass.set("com.yourorg.BatchDriver")
+}
+
 tasks.withType<JavaCompile>().configureEach {
     options.encoding = "UTF-8"
     options.compilerArgs.add("-parameters")
@@ -80,6 +114,9 @@ tasks.withType<JavaCompile>().configureEach {
 tasks.named<JavaCompile>("compileJava") {
     options.release.set(8)
 }
+tasks.named<JavaCompile>("compileJfrJava") {
+    options.release.set(11)
+}
 
 configure<ContactsExtension> {
     val j = Contact("team@moderne.io")
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import jdk.jfr.*;
+
+/**
+ * Loaded by {@link PhaseEvents} when the runtime has Flight Recorder.
+ */
+final class FlightRecorderPhaseEvents extends PhaseEvents {
+
+    @Category({"Rewrite", "Make False Instance Methods Static"})
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class PhaseEvent extends Event {
+        @Label("Source Path")
+        String sourcePath;
+
+        @Label("Class")
+        String className;
+
+        @Label("Elements")
+        long elements;
+    }
+
+    @Name("com.yourorg.MemberCollection")
+    @Label("Member Collection")
+    @Description("Collecting the fields and methods of a class scope. Elements are the members collected.")
+    static final class MemberCollection extends PhaseEvent {
+    }
+
+    @Name("com.yourorg.ReferenceScan")
+    @Label("Reference Scan")
+    @Description("Scanning a top-level class, and the classes nested in it, for references to members. Includes member " +
+                 "collection. Elements are the tree elements visited.")
+    static final class ReferenceScan extends PhaseEvent {
+    }
+
+    @Name("com.yourorg.Propagation")
+    @Label("Fixpoint Propagation")
+    @Description("Propagating instance usage along call edges. Elements are the propagation steps.")
+    static final class Propagation extends PhaseEvent {
+    }
+
+    @Name("com.yourorg.Rewrite")
+    @Label("Rewrite")
+    @Description("Adding static modifiers and removing captures of this. Elements are the methods made static.")
+    static final class Rewrite extends PhaseEvent {
+    }
+
+    /**
+     * By phase. Whether an event type is enabled is read without creating an event.
+     */
+    private final EventType[] types = {
+            EventType.getEventType(MemberCollection.class),
+            EventType.getEventType(ReferenceScan.class),
+            EventType.getEventType(Propagation.class),
+            EventType.getEventType(Rewrite.class)
+    };
+
+    @Override
+    Object start(int phase) {
+        if (!types[phase].isEnabled()) {
+            return null;
+        }
+        PhaseEvent event;
+        switch (phase) {
+            case MEMBER_COLLECTION:
+                event = new MemberCollection();
+                break;
+            case REFERENCE_SCAN:
+                event = new ReferenceScan();
+                break;
+            case PROPAGATION:
+                event = new Propagation();
+                break;
+            default:
+                event = new Rewrite();
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void end(Object started, String sourcePath, String className, long elements) {
+        PhaseEvent event = (PhaseEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourcePath = sourcePath;
+            event.className = className;
+            event.elements = elements;
+            event.commit();
+        }
+    }
+}
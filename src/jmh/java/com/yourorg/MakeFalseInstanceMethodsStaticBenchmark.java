@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.J;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MakeFalseInstanceMethodsStatic} end to end and each of its per-class phases in isolation.
+ * Every phase is fed the output of the phases before it, computed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MakeFalseInstanceMethodsStaticBenchmark {
+
+    @Param({"100", "1000"})
+    int methodCount;
+
+    @Param({"10", "100"})
+    int fieldCount;
+
+    @Param({"1", "100"})
+    int callChainDepth;
+
+    @Param({"5", "50"})
+    int bodySize;
+
+    @Param({"false", "true"})
+    boolean typeAttributed;
+
+    J.CompilationUnit cu;
+    J.ClassDeclaration clazz;
+    UsageAnalysis analysis;
+    TypeHierarchy hierarchy;
+    BitSet methodsToMakeStatic;
+
+    JavaVisitor<ExecutionContext> visitor;
+
+    /**
+     * The analyses of a run are memoized, and its data table rows kept, in the execution context. A fresh one for
+     * every invocation measures a cold run, without what the invocations before it left behind.
+     */
+    @State(Scope.Thread)
+    public static class Run {
+        ExecutionContext ctx;
+
+        @Setup(Level.Invocation)
+        public void setup() {
+            ctx = new InMemoryExecutionContext();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cu = JavaParser.fromJavaVersion().build()
+                .parse(new InMemoryExecutionContext(), SyntheticClasses.generate(methodCount, fieldCount, callChainDepth, bodySize))
+                .get(0);
+        clazz = cu.getClasses().get(0);
+        analysis = UsageAnalysis.analyze(clazz, typeAttributed);
+        hierarchy = new TypeHierarchy();
+        methodsToMakeStatic = MakeFalseInstanceMethodsStatic.propagateInstanceUsage(analysis, hierarchy, false, null);
+        visitor = new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(typeAttributed).getVisitor();
+    }
+
+    @Benchmark
+    public J endToEnd(Run run) {
+        return visitor.visit(cu, run.ctx);
+    }
+
+    @Benchmark
+    public UsageAnalysis.ClassUsage memberCollection() {
+        return UsageAnalysis.collectMembers(clazz, typeAttributed);
+    }
+
+    @Benchmark
+    public UsageAnalysis referenceScanning() {
+        return UsageAnalysis.analyze(clazz, typeAttributed);
+    }
+
+    @Benchmark
+    public BitSet fixpointPropagation() {
+        return MakeFalseInstanceMethodsStatic.propagateInstanceUsage(analysis, hierarchy, false, null);
+    }
+
+    @Benchmark
+    public J.ClassDeclaration modifierRewriting() {
+        return MakeFalseInstanceMethodsStatic.addStaticModifiers(clazz, methodsToMakeStatic);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+/**
+ * Generates a single class whose shape is controlled independently along each dimension the recipe's cost depends on.
+ */
+final class SyntheticClasses {
+
+    private SyntheticClasses() {
+    }
+
+    /**
+     * @param methodCount    Number of private helper methods, each a candidate for being made static.
+     * @param fieldCount     Number of instance fields. Every third helper reads one of them.
+     * @param callChainDepth Length of a chain of private methods that ends in a field read. Every fifth helper
+     *                       calls into the head of the chain.
+     * @param bodySize       Number of statements in each helper body.
+     * @return The source of a class named {@code Synthetic}.
+     */
+    static String generate(int methodCount, int fieldCount, int callChainDepth, int bodySize) {
+        StringBuilder source = new StringBuilder("class Synthetic {\n");
+        for (int f = 0; f < fieldCount; f++) {
+            source.append("    private int field").append(f).append(" = ").append(f).append(";\n");
+        }
+        source.append('\n');
+
+        for (int c = 0; c < callChainDepth; c++) {
+            source.append("    private int chain").append(c).append("() {\n");
+            if (c < callChainDepth - 1) {
+                source.append("        return chain").append(c + 1).append("();\n");
+            } else {
+                source.append("        return ").append(fieldCount > 0 ? "field0" : "0").append(";\n");
+            }
+            source.append("    }\n\n");
+        }
+
+        for (int m = 0; m < methodCount; m++) {
+            source.append("    private int helper").append(m).append("(int arg) {\n");
+            source.append("        int local = arg;\n");
+            for (int s = 1; s < bodySize; s++) {
+                source.append("        local += ").append(s).append(";\n");
+            }
+            if (fieldCount > 0 && m % 3 == 0) {
+                source.append("        local += field").append(m % fieldCount).append(";\n");
+            }
+            if (callChainDepth > 0 && m % 5 == 0) {
+                source.append("        local += chain0();\n");
+            }
+            source.append("        return local;\n");
+            source.append("    }\n\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.internal.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A directory of per-class verdicts, each recording which methods of a class can be made static, keyed by a hash of
+ * the class's printed source and the analysis version.
+ * <p>
+ * Every entry is its own file, written to a temporary file and atomically moved into place, so several threads or JVMs
+ * can share a directory without coordination. A read refreshes the entry's modification time, and once the directory
+ * holds more than its maximum number of entries the least recently used ones are deleted. Eviction is guarded by a lock
+ * file so that only one JVM evicts at a time.
+ */
+final class AnalysisCache {
+    private static final String ENTRY_SUFFIX = ".verdict";
+    private static final String FORMAT_HEADER = "v1\n";
+    private static final Map<Path, AnalysisCache> OPEN_CACHES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final int maxEntries;
+    private final AtomicInteger approximateEntries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private AnalysisCache(Path directory, int maxEntries) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create analysis cache directory " + directory, e);
+        }
+        this.approximateEntries = new AtomicInteger(listEntries().size());
+    }
+
+    /**
+     * @return The cache for a directory, shared by every recipe instance in this JVM that uses the same directory.
+     * @throws IllegalArgumentException If the directory is already open with a different maximum number of entries.
+     */
+    static AnalysisCache open(Path directory, int maxEntries) {
+        AnalysisCache cache = OPEN_CACHES.computeIfAbsent(directory.toAbsolutePath().normalize(), d -> new AnalysisCache(d, maxEntries));
+        if (cache.maxEntries != maxEntries) {
+            throw new IllegalArgumentException("Analysis cache directory " + cache.directory + " is already open with a " +
+                                               "maximum of " + cache.maxEntries + " entries, not " + maxEntries);
+        }
+        return cache;
+    }
+
+    static String key(String salt, String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every Java platform", e);
+        }
+    }
+
+    /**
+     * @return The positions, among the methods of the class, of those that can be made static, or null on a miss.
+     */
+    @Nullable
+    int[] get(String key) {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        try {
+            int[] verdict = decode(new String(Files.readAllBytes(entry), StandardCharsets.UTF_8));
+            if (verdict != null) {
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+                return verdict;
+            }
+        } catch (IOException ignored) {
+            // missing, or evicted by another thread or JVM after we looked for it
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(String key, int[] verdict) {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+        Path temp = null;
+        boolean moved = false;
+        try {
+            temp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temp, encode(verdict).getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } catch (IOException e) {
+            // the cache is only an optimization, so a failed write just means the class is analyzed again next time
+            return;
+        } finally {
+            if (!moved) {
+                deleteQuietly(temp);
+            }
+        }
+        if (approximateEntries.incrementAndGet() > maxEntries) {
+            evict();
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Delete the least recently used entries until the directory is back to 90% of its maximum size.
+     */
+    private void evict() {
+        try (FileChannel channel = FileChannel.open(directory.resolve(".lock"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) {
+                // another JVM is already evicting
+                return;
+            }
+            Map<Path, FileTime> lastAccess = new HashMap<>();
+            for (Path entry : listEntries()) {
+                try {
+                    lastAccess.put(entry, Files.getLastModifiedTime(entry));
+                } catch (IOException ignored) {
+                    // already evicted
+                }
+            }
+            List<Path> byLastAccess = new ArrayList<>(lastAccess.keySet());
+            byLastAccess.sort(Comparator.comparing(lastAccess::get));
+
+            int target = (int) (maxEntries * 0.9);
+            int remaining = byLastAccess.size();
+            for (int i = 0; i < byLastAccess.size() && remaining > target; i++, remaining--) {
+                deleteQuietly(byLastAccess.get(i));
+            }
+            approximateEntries.set(remaining);
+        } catch (IOException | OverlappingFileLockException ignored) {
+            // another thread in this JVM holds the lock
+        }
+    }
+
+    private List<Path> listEntries() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = new ArrayList<>();
+            files.filter(f -> f.getFileName().toString().endsWith(ENTRY_SUFFIX)).forEach(entries::add);
+            return entries;
+        } catch (IOException e) {
+            return new ArrayList<>();
+        }
+    }
+
+    private static String encode(int[] verdict) {
+        StringBuilder encoded = new StringBuilder(FORMAT_HEADER);
+        for (int i = 0; i < verdict.length; i++) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            encoded.append(verdict[i]);
+        }
+        return encoded.toString();
+    }
+
+    @Nullable
+    private static int[] decode(String encoded) {
+        if (!encoded.startsWith(FORMAT_HEADER)) {
+            return null;
+        }
+        String body = encoded.substring(FORMAT_HEADER.length());
+        if (body.isEmpty()) {
+            return new int[0];
+        }
+        String[] positions = body.split(",");
+        int[] verdict = new int[positions.length];
+        try {
+            for (int i = 0; i < positions.length; i++) {
+                verdict[i] = Integer.parseInt(positions[i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return verdict;
+    }
+
+    private static void deleteQuietly(@Nullable Path path) {
+        if (path != null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ignored) {
+                // best effort
+            }
+        }
+    }
+}
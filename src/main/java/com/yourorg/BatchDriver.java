@@ -0,0 +1,495 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.Result;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.internal.JavaTypeCache;
+import org.openrewrite.java.tree.J;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Collections.singletonList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs {@link MakeFalseInstanceMethodsStatic} over a source tree, outside of any build plugin:
+ * <pre>
+ * BatchDriver --source src/main/java [--classpath a.jar:b.jar] [--output diff|write] [--output-path path]
+ *             [--threads n] [--virtual-threads] [--batch-size n] [--memory-ceiling size] [--use-type-attribution]
+ * </pre>
+ * Files are streamed through in batches, one file each by default. A batch is parsed, run, written out and released
+ * before its worker takes the next one, so the trees held at any time are those of at most one batch per thread,
+ * however large the tree. A batch is only started once there is room for its results among those waiting to be
+ * reported. Workers share nothing but the {@link TypeHierarchy}, a pool of parsers and the one type cache all the
+ * parsers fill, so throughput scales with cores. Types declared by files of the tree are only resolved within a
+ * batch, or if they are on the classpath.
+ * <p>
+ * With a memory ceiling, no new batch starts while the live heap, as measured after the last garbage collection,
+ * is above it. The batches in flight are left to finish and are reported, and the type cache is cleared, before
+ * going on.
+ * <p>
+ * A file that fails to parse, or that the recipe fails on, is reported and left alone, and the run goes on. When a
+ * batch of several files fails, its files are retried one at a time so that only the failing file is skipped.
+ * <p>
+ * In {@code diff} mode a unified diff of every changed file is written, in source order, to the output path or to
+ * standard output. In {@code write} mode changed files are written under the output path, mirroring the source tree,
+ * or in place when there is none. A summary with the throughput in files per second goes to standard error.
+ */
+public final class BatchDriver {
+    static final String USAGE = "Usage: BatchDriver --source <directory> [--classpath <path>] [--output diff|write] " +
+                                "[--output-path <path>] [--threads <n>] [--virtual-threads] [--batch-size <n>] " +
+                                "[--memory-ceiling <bytes>[k|m|g]] [--use-type-attribution]";
+
+    enum OutputMode {
+        DIFF, WRITE
+    }
+
+    static final class Options {
+        Path source;
+        List<Path> classpath = new ArrayList<>();
+        OutputMode output = OutputMode.DIFF;
+
+        @Nullable
+        Path outputPath;
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads;
+        int batchSize = 1;
+
+        /**
+         * In bytes, or 0 for no ceiling.
+         */
+        long memoryCeiling;
+
+        boolean useTypeAttribution;
+
+        /**
+         * @throws IllegalArgumentException If an argument is unknown, missing its value, or invalid.
+         */
+        static Options parse(String... args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                switch (arg) {
+                    case "--source":
+                        options.source = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--classpath":
+                        for (String entry : value(args, ++i, arg).split(File.pathSeparator)) {
+                            if (!entry.isEmpty()) {
+                                options.classpath.add(Paths.get(entry));
+                            }
+                        }
+                        break;
+                    case "--output":
+                        String mode = value(args, ++i, arg);
+                        if ("diff".equals(mode)) {
+                            options.output = OutputMode.DIFF;
+                        } else if ("write".equals(mode)) {
+                            options.output = OutputMode.WRITE;
+                        } else {
+                            throw new IllegalArgumentException("Unknown output mode " + mode + ", expected diff or write");
+                        }
+                        break;
+                    case "--output-path":
+                        options.outputPath = Paths.get(value(args, ++i, arg));
+                        break;
+                    case "--threads":
+                        options.threads = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--virtual-threads":
+                        options.virtualThreads = true;
+                        break;
+                    case "--batch-size":
+                        options.batchSize = positive(value(args, ++i, arg), arg);
+                        break;
+                    case "--memory-ceiling":
+                        options.memoryCeiling = bytes(value(args, ++i, arg), arg);
+                        break;
+                    case "--use-type-attribution":
+                        options.useTypeAttribution = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument " + arg);
+                }
+            }
+            if (options.source == null) {
+                throw new IllegalArgumentException("--source is required");
+            }
+            if (!Files.isDirectory(options.source)) {
+                throw new IllegalArgumentException(options.source + " is not a directory");
+            }
+            return options;
+        }
+
+        private static String value(String[] args, int i, String name) {
+            if (i >= args.length) {
+                throw new IllegalArgumentException(name + " requires a value");
+            }
+            return args[i];
+        }
+
+        private static int positive(String value, String name) {
+            int number;
+            try {
+                number = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " must be a number", e);
+            }
+            if (number < 1) {
+                throw new IllegalArgumentException(name + " must be at least 1");
+            }
+            return number;
+        }
+
+        /**
+         * @param value A number of bytes, optionally followed by {@code k}, {@code m} or {@code g}.
+         */
+        private static long bytes(String value, String name) {
+            String lower = value.toLowerCase();
+            int shift = lower.endsWith("k") ? 10 : lower.endsWith("m") ? 20 : lower.endsWith("g") ? 30 : 0;
+            try {
+                long number = Long.parseLong(shift == 0 ? lower : lower.substring(0, lower.length() - 1));
+                if (number < 1) {
+                    throw new IllegalArgumentException(name + " must be positive");
+                }
+                return number << shift;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " must be a size such as 512m or 4g", e);
+            }
+        }
+    }
+
+    static final class Summary {
+        int files;
+        int changed;
+        int failed;
+        int batches;
+
+        /**
+         * The number of times a batch waited for the live heap to fall below the memory ceiling.
+         */
+        int throttled;
+
+        long nanos;
+
+        double filesPerSecond() {
+            return nanos == 0 ? 0 : files * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d files, %d changed, %d failed in %d batches, throttled %d times, in %.2f s (%.1f files/s)",
+                    files, changed, failed, batches, throttled, nanos / 1e9, filesPerSecond());
+        }
+    }
+
+    private static final class FileResult {
+        final Path file;
+        final boolean changed;
+
+        @Nullable
+        final String diff;
+
+        @Nullable
+        final Throwable failure;
+
+        private FileResult(Path file, boolean changed, @Nullable String diff, @Nullable Throwable failure) {
+            this.file = file;
+            this.changed = changed;
+            this.diff = diff;
+            this.failure = failure;
+        }
+    }
+
+    private final Options options;
+    private final MakeFalseInstanceMethodsStatic recipe;
+    private final TypeHierarchy hierarchy = new TypeHierarchy();
+
+    /**
+     * Parsers are expensive to build and not thread-safe, so each is used by one batch at a time and then reused.
+     * There are never more than there are batches in flight.
+     */
+    private final Queue<JavaParser> parsers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Shared by every parser, so that a type is held once however many threads resolve it.
+     */
+    private final JavaTypeCache typeCache = new SynchronizedTypeCache();
+
+    BatchDriver(Options options) {
+        this.options = options;
+        this.recipe = new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(options.useTypeAttribution ? true : null);
+    }
+
+    public static void main(String[] args) {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            Summary summary = new BatchDriver(options).run(System.out, System.err);
+            System.exit(summary.failed == 0 ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * @param out Where diffs go when there is no output path.
+     * @param err Where failures and the summary go.
+     */
+    Summary run(PrintStream out, PrintStream err) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(options.source)) {
+            files = walk.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        Summary summary = new Summary();
+        long start = System.nanoTime();
+        ExecutorService executor = newExecutor();
+        try (Writer diffs = options.output == OutputMode.DIFF ? diffWriter(out) : null) {
+            // batches are admitted here rather than queued, so that with virtual threads too only so many are in
+            // flight, and a batch counts against the limit until its results are reported, in source order
+            Queue<Future<List<FileResult>>> pending = new ArrayDeque<>();
+            for (int from = 0; from < files.size(); from += options.batchSize) {
+                List<Path> batch = files.subList(from, Math.min(from + options.batchSize, files.size()));
+                while (!pending.isEmpty() && (pending.size() >= options.threads || pending.peek().isDone())) {
+                    report(await(pending.poll()), summary, diffs, err);
+                }
+                if (options.memoryCeiling > 0 && liveHeap() > options.memoryCeiling) {
+                    summary.throttled++;
+                    // wait for every batch in flight to finish, then start over with an empty type cache
+                    while (!pending.isEmpty()) {
+                        report(await(pending.poll()), summary, diffs, err);
+                    }
+                    typeCache.clear();
+                }
+                summary.batches++;
+                pending.add(executor.submit(() -> process(batch)));
+            }
+            while (!pending.isEmpty()) {
+                report(await(pending.poll()), summary, diffs, err);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        summary.nanos = System.nanoTime() - start;
+        err.println(summary);
+        return summary;
+    }
+
+    /**
+     * @return The heap in use after the most recent garbage collection, which unlike the heap in use right now does
+     * not count garbage that has yet to be collected.
+     */
+    private static long liveHeap() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage afterCollection = pool.getType() == MemoryType.HEAP ? pool.getCollectionUsage() : null;
+            if (afterCollection != null) {
+                used += afterCollection.getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static void report(List<FileResult> results, Summary summary, @Nullable Writer diffs, PrintStream err) throws IOException {
+        for (FileResult result : results) {
+            summary.files++;
+            if (result.failure != null) {
+                summary.failed++;
+                err.println("Failed on " + result.file + ": " + result.failure);
+            } else if (result.changed) {
+                summary.changed++;
+                if (diffs != null && result.diff != null) {
+                    diffs.write(result.diff);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return A result for every file of the batch, in the same order. Nothing of the batch's trees is retained.
+     */
+    private List<FileResult> process(List<Path> batch) {
+        List<FileResult> results = processBatch(batch);
+        if (results != null) {
+            return results;
+        }
+        // a failure of the recipe can't be traced to the file that caused it, so each file is run again on its own
+        results = new ArrayList<>(batch.size());
+        for (Path file : batch) {
+            results.addAll(requireNonNull(processBatch(singletonList(file))));
+        }
+        return results;
+    }
+
+    /**
+     * @return null if a batch of several files failed as a whole.
+     */
+    @Nullable
+    private List<FileResult> processBatch(List<Path> batch) {
+        JavaParser parser = parsers.poll();
+        if (parser == null) {
+            parser = JavaParser.fromJavaVersion()
+                    .classpath(options.classpath)
+                    .typeCache(typeCache)
+                    .logCompilationWarningsAndErrors(false)
+                    .build();
+        }
+        try {
+            List<Throwable> errors = new CopyOnWriteArrayList<>();
+            // a context per batch keeps the memoized analyses of a batch from outliving it
+            ExecutionContext ctx = new InMemoryExecutionContext(errors::add);
+            hierarchy.shareWith(ctx);
+
+            Map<Path, J.CompilationUnit> parsed = new HashMap<>();
+            for (J.CompilationUnit cu : parser.parse(batch, options.source, ctx)) {
+                parsed.put(options.source.resolve(cu.getSourcePath()), cu);
+            }
+            Throwable parseFailure = errors.isEmpty() ? new IllegalStateException("Unable to parse") : errors.get(0);
+            errors.clear();
+
+            Map<Path, Result> changed = new HashMap<>();
+            for (Result result : recipe.run(new ArrayList<>(parsed.values()), ctx).getResults()) {
+                if (result.getBefore() != null && result.getAfter() != null) {
+                    changed.put(options.source.resolve(result.getBefore().getSourcePath()), result);
+                }
+            }
+            if (!errors.isEmpty()) {
+                return batch.size() > 1 ? null : singletonList(new FileResult(batch.get(0), false, null, errors.get(0)));
+            }
+
+            List<FileResult> results = new ArrayList<>(batch.size());
+            for (Path file : batch) {
+                results.add(parsed.containsKey(file) ? write(file, changed.get(file)) : new FileResult(file, false, null, parseFailure));
+            }
+            return results;
+        } catch (Exception | StackOverflowError e) {
+            return batch.size() > 1 ? null : singletonList(new FileResult(batch.get(0), false, null, e));
+        } finally {
+            parser.reset();
+            parsers.add(parser);
+        }
+    }
+
+    private FileResult write(Path file, @Nullable Result result) throws IOException {
+        if (result == null) {
+            return new FileResult(file, false, null, null);
+        }
+        if (options.output == OutputMode.DIFF) {
+            return new FileResult(file, true, result.diff(), null);
+        }
+        Path target = options.outputPath == null ? file : options.outputPath.resolve(options.source.relativize(file));
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+        Files.write(target, requireNonNull(result.getAfter()).printAll().getBytes(StandardCharsets.UTF_8));
+        return new FileResult(file, true, null, null);
+    }
+
+    private ExecutorService newExecutor() {
+        if (options.virtualThreads) {
+            try {
+                // looked up reflectively, so that the driver still runs on Java 8
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads require Java 21 or later", e);
+            }
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(options.threads, runnable -> {
+            Thread thread = new Thread(runnable, "batch-driver-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private Writer diffWriter(PrintStream out) throws IOException {
+        if (options.outputPath == null) {
+            // closing the writer must not close standard output
+            return new OutputStreamWriter(out, StandardCharsets.UTF_8) {
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+        if (options.outputPath.getParent() != null) {
+            Files.createDirectories(options.outputPath.getParent());
+        }
+        return Files.newBufferedWriter(options.outputPath, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A type cache that parsers on several threads may fill at once.
+     */
+    private static final class SynchronizedTypeCache extends JavaTypeCache {
+        @Override
+        @Nullable
+        public synchronized <T> T get(String signature) {
+            return super.get(signature);
+        }
+
+        @Override
+        public synchronized void put(String signature, Object o) {
+            super.put(signature, o);
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+        }
+    }
+
+    private static List<FileResult> await(Future<List<FileResult>> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for results");
+        } catch (ExecutionException e) {
+            // failures of a file are returned rather than thrown, so only an error such as running out of memory gets here
+            throw new IOException(e.getCause());
+        }
+    }
+}
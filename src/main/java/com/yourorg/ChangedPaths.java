@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The files changed by a pull request, as listed one path per line by {@code git diff --name-only}, and the
+ * compilation units whose analysis they can affect: those that are changed themselves, and those declaring a class
+ * that extends or implements a type declared in a changed file, which may for instance have become serializable.
+ * <p>
+ * Both the listed paths and source paths are relative to the repository root, and a file is changed if its normalized
+ * source path is one of the normalized listed paths. A type is taken to be declared in the file named after it, as
+ * the convention for top-level types goes, under a path that ends with the directories of its package.
+ */
+final class ChangedPaths {
+    private static final String CHANGED_PATHS = ChangedPaths.class.getName();
+
+    /**
+     * Each changed path, by its file name.
+     */
+    private final Map<String, List<Path>> pathsByFileName = new HashMap<>();
+
+    private ChangedPaths(List<String> lines) {
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (!trimmed.isEmpty()) {
+                Path path = Paths.get(trimmed).normalize();
+                pathsByFileName.computeIfAbsent(path.getFileName().toString(), name -> new ArrayList<>(1)).add(path);
+            }
+        }
+    }
+
+    /**
+     * @return The changed paths listed in the file, read once per execution context.
+     */
+    static ChangedPaths of(String changedPathsFile, ExecutionContext ctx) {
+        Map<String, ChangedPaths> loaded;
+        synchronized (ctx) {
+            loaded = ctx.getMessage(CHANGED_PATHS);
+            if (loaded == null) {
+                loaded = new ConcurrentHashMap<>();
+                ctx.putMessage(CHANGED_PATHS, loaded);
+            }
+        }
+        return loaded.computeIfAbsent(changedPathsFile, file -> {
+            try {
+                return new ChangedPaths(Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to read changed paths from " + file, e);
+            }
+        });
+    }
+
+    /**
+     * A file that isn't changed is skipped on a map lookup by file name, unless one of its classes, top-level,
+     * nested, local or anonymous, extends or implements something. Their supertypes are looked up in the hierarchy.
+     */
+    boolean isAffected(J.CompilationUnit cu, TypeHierarchy hierarchy) {
+        if (isChanged(cu.getSourcePath())) {
+            return true;
+        }
+        AtomicBoolean affected = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, AtomicBoolean affected) {
+                if (affected.get()) {
+                    return classDecl;
+                }
+                if ((classDecl.getExtends() != null || classDecl.getImplements() != null) &&
+                    extendsChangedType(classDecl.getType(), false, hierarchy)) {
+                    affected.set(true);
+                    return classDecl;
+                }
+                return super.visitClassDeclaration(classDecl, affected);
+            }
+
+            @Override
+            public J.NewClass visitNewClass(J.NewClass newClass, AtomicBoolean affected) {
+                if (affected.get()) {
+                    return newClass;
+                }
+                // an anonymous class extends or implements the type it instantiates
+                if (newClass.getBody() != null && extendsChangedType(newClass.getType(), true, hierarchy)) {
+                    affected.set(true);
+                    return newClass;
+                }
+                return super.visitNewClass(newClass, affected);
+            }
+        }.visit(cu, affected);
+        return affected.get();
+    }
+
+    private boolean extendsChangedType(@Nullable JavaType type, boolean includingItself, TypeHierarchy hierarchy) {
+        JavaType.FullyQualified fullyQualified = TypeUtils.asFullyQualified(type);
+        if (fullyQualified == null) {
+            return false;
+        }
+        for (String supertype : hierarchy.supertypes(fullyQualified)) {
+            if ((includingItself || !supertype.equals(fullyQualified.getFullyQualifiedName())) && declaresChangedType(supertype)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isChanged(Path sourcePath) {
+        Path normalized = sourcePath.normalize();
+        Path fileName = normalized.getFileName();
+        List<Path> candidates = fileName == null ? null : pathsByFileName.get(fileName.toString());
+        return candidates != null && candidates.contains(normalized);
+    }
+
+    private boolean declaresChangedType(String fullyQualifiedName) {
+        int nested = fullyQualifiedName.indexOf('$');
+        String topLevel = nested < 0 ? fullyQualifiedName : fullyQualifiedName.substring(0, nested);
+        List<Path> candidates = pathsByFileName.get(topLevel.substring(topLevel.lastIndexOf('.') + 1) + ".java");
+        if (candidates != null) {
+            Path declaringFile = Paths.get(topLevel.replace('.', '/') + ".java");
+            for (Path changed : candidates) {
+                if (changed.endsWith(declaringFile)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
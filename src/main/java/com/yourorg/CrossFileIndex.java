@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.JavaType;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The project-wide accumulator of {@link MakeFalseInstanceMethodsStaticAcrossFiles}. It is filled by the scan phase,
+ * one compilation unit at a time from any number of threads, and read by the edit phase.
+ * <p>
+ * A candidate is a non-private final method that uses no instance state. It is made static unless some file refers
+ * to it in a way that a static method can't satisfy: through a bound method reference, or by name through reflection.
+ * <p>
+ * Method signatures, source paths and reflectively used names share one {@link SymbolTable}, told apart by a one
+ * character prefix. A method's record holds its flags and declaring file, and its references are the files calling it.
+ * The candidates of its own class that call a candidate are the references of a separate record.
+ * <p>
+ * The scan of each compilation unit collects what it finds in a {@link Batch}, with signatures already built, and
+ * adds it under a single lock, so that parallel scans contend once per file rather than once per fact. Everything
+ * else happens after the scan, on one thread.
+ */
+final class CrossFileIndex implements Closeable {
+    private static final String METHOD = "M";
+    private static final String FILE = "F";
+    private static final String REFLECTIVELY_NAMED = "R";
+    private static final String CANDIDATE_CALLERS = "C";
+
+    private static final int CANDIDATE = 1;
+    private static final int BLOCKED = 1 << 1;
+    private static final int AFFECTED = 1 << 2;
+
+    private final SymbolTable symbols;
+
+    CrossFileIndex(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    static String signature(JavaType.Method method) {
+        StringBuilder signature = new StringBuilder(method.getDeclaringType().getFullyQualifiedName())
+                .append('#').append(method.getName()).append('(');
+        List<JavaType> parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.size(); i++) {
+            if (i > 0) {
+                signature.append(',');
+            }
+            signature.append(parameterTypes.get(i));
+        }
+        return signature.append(')').toString();
+    }
+
+    /**
+     * Adds everything one compilation unit's scan has found.
+     */
+    synchronized void add(Batch batch) {
+        int file = symbols.intern(FILE + batch.sourcePath);
+        for (String candidate : batch.candidates) {
+            int id = symbols.intern(METHOD + candidate);
+            symbols.addFlags(id, CANDIDATE);
+            symbols.associate(id, file);
+        }
+        for (Map.Entry<String, Set<String>> callers : batch.candidateCallers.entrySet()) {
+            int id = symbols.intern(CANDIDATE_CALLERS + callers.getKey());
+            for (String caller : callers.getValue()) {
+                symbols.addReference(id, symbols.intern(METHOD + caller));
+            }
+        }
+        for (String method : batch.calledMethods) {
+            symbols.addReference(symbols.intern(METHOD + method), file);
+        }
+        for (String method : batch.blocked) {
+            symbols.addFlags(symbols.intern(METHOD + method), BLOCKED);
+        }
+        for (String methodName : batch.reflectivelyNamed) {
+            symbols.intern(REFLECTIVELY_NAMED + methodName);
+        }
+    }
+
+    boolean isMadeStatic(@Nullable JavaType.Method method) {
+        if (method == null) {
+            return false;
+        }
+        int id = symbols.find(METHOD + signature(method));
+        return id >= 0 && (symbols.flags(id) & (CANDIDATE | BLOCKED)) == CANDIDATE &&
+               symbols.find(REFLECTIVELY_NAMED + method.getName()) < 0;
+    }
+
+    /**
+     * Called once the scan phase is over, before any call to {@link #isAffected(Path)}.
+     */
+    void completeScan() {
+        // a candidate that stays an instance method blocks the candidates that call it, and so on until none is left
+        Deque<Integer> blocked = new ArrayDeque<>();
+        for (int id = 0, size = symbols.size(); id < size; id++) {
+            int flags = symbols.flags(id);
+            if ((flags & CANDIDATE) == 0) {
+                continue;
+            }
+            if ((flags & BLOCKED) == 0 && symbols.find(REFLECTIVELY_NAMED + methodName(symbols.key(id))) >= 0) {
+                symbols.addFlags(id, BLOCKED);
+                flags |= BLOCKED;
+            }
+            if ((flags & BLOCKED) != 0) {
+                blocked.push(id);
+            }
+        }
+        while (!blocked.isEmpty()) {
+            int callers = symbols.find(CANDIDATE_CALLERS + symbols.key(blocked.pop()).substring(METHOD.length()));
+            if (callers >= 0) {
+                symbols.forEachReference(callers, caller -> {
+                    if ((symbols.flags(caller) & (CANDIDATE | BLOCKED)) == CANDIDATE) {
+                        symbols.addFlags(caller, BLOCKED);
+                        blocked.push(caller);
+                    }
+                });
+            }
+        }
+
+        for (int id = 0, size = symbols.size(); id < size; id++) {
+            if ((symbols.flags(id) & (CANDIDATE | BLOCKED)) != CANDIDATE) {
+                continue;
+            }
+            symbols.addFlags(symbols.associated(id), AFFECTED);
+            symbols.forEachReference(id, caller -> symbols.addFlags(caller, AFFECTED));
+        }
+    }
+
+    /**
+     * @return Whether the edit phase has anything to do in the file: it declares, or calls from outside the declaring
+     * file, a method that is made static.
+     */
+    boolean isAffected(Path sourcePath) {
+        int id = symbols.find(FILE + sourcePath);
+        return id >= 0 && (symbols.flags(id) & AFFECTED) != 0;
+    }
+
+    @Override
+    public void close() {
+        symbols.close();
+    }
+
+    /**
+     * What the scan of one compilation unit has found, with repeats removed. Used by one thread only.
+     */
+    static final class Batch {
+        private final Path sourcePath;
+        private final Set<String> candidates = new LinkedHashSet<>();
+        private final Map<String, Set<String>> candidateCallers = new LinkedHashMap<>();
+        private final Set<String> calledMethods = new LinkedHashSet<>();
+        private final Set<String> blocked = new LinkedHashSet<>();
+        private final Set<String> reflectivelyNamed = new LinkedHashSet<>();
+
+        Batch(Path sourcePath) {
+            this.sourcePath = sourcePath;
+        }
+
+        /**
+         * The candidate is declared in this batch's compilation unit.
+         */
+        void addCandidate(JavaType.Method method) {
+            candidates.add(signature(method));
+        }
+
+        /**
+         * The caller, a candidate of the same class, can only be made static if the candidate it calls is.
+         */
+        void addCandidateCaller(JavaType.Method candidate, JavaType.Method caller) {
+            candidateCallers.computeIfAbsent(signature(candidate), c -> new LinkedHashSet<>(2)).add(signature(caller));
+        }
+
+        /**
+         * The method is called from this batch's compilation unit.
+         */
+        void addCallSite(JavaType.Method method) {
+            calledMethods.add(signature(method));
+        }
+
+        /**
+         * The method is used where its receiver matters, such as a bound method reference {@code obj::method}.
+         */
+        void block(JavaType.Method method) {
+            blocked.add(signature(method));
+        }
+
+        /**
+         * A method of this name may be looked up reflectively, so no method of any type by that name is made static.
+         */
+        void blockReflectivelyNamed(String methodName) {
+            reflectivelyNamed.add(methodName);
+        }
+    }
+
+    /**
+     * @param key A method key, prefix included.
+     */
+    private static String methodName(String key) {
+        return key.substring(key.indexOf('#') + 1, key.indexOf('('));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class FalseInstanceMethodStatistics extends DataTable<FalseInstanceMethodStatistics.Row> {
+
+    public FalseInstanceMethodStatistics(Recipe recipe) {
+        super(recipe,
+                "False instance method statistics",
+                "Per compilation unit timings and work counters of the make false instance methods static analysis.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The path of the compilation unit.")
+        String sourcePath;
+
+        @Column(displayName = "Cache time (ns)",
+                description = "Time spent computing analysis cache keys and reading and writing verdicts.")
+        long cacheNanos;
+
+        @Column(displayName = "Reference scan time (ns)",
+                description = "Time spent collecting members and scanning references, summed over the classes of the file.")
+        long referenceScanNanos;
+
+        @Column(displayName = "Propagation time (ns)",
+                description = "Time spent propagating instance usage along call edges, summed over the classes of the file.")
+        long propagationNanos;
+
+        @Column(displayName = "Modifier rewrite time (ns)",
+                description = "Time spent adding static modifiers, summed over the classes of the file.")
+        long modifierRewriteNanos;
+
+        @Column(displayName = "Classes",
+                description = "The number of classes analyzed, including nested, local and anonymous classes.")
+        int classes;
+
+        @Column(displayName = "Methods",
+                description = "The number of methods declared by the analyzed classes.")
+        int methods;
+
+        @Column(displayName = "Instance fields",
+                description = "The number of instance fields declared by the analyzed classes.")
+        int instanceFields;
+
+        @Column(displayName = "Reference scan visits",
+                description = "The number of tree elements visited while scanning references.")
+        long referenceScanVisits;
+
+        @Column(displayName = "Fixpoint iterations",
+                description = "The number of methods taken from the worklist while propagating instance usage.")
+        long fixpointIterations;
+
+        @Column(displayName = "Cached classes",
+                description = "The number of top-level classes whose verdict was read from the analysis cache rather than analyzed.")
+        int cachedClasses;
+
+        @Column(displayName = "Methods made static",
+                description = "The number of methods a static modifier was added to.")
+        int methodsMadeStatic;
+
+        @Column(displayName = "Allocation sites removed",
+                description = "The number of lambdas and method references that captured `this` only to call a method " +
+                        "made static, and so were allocated on every evaluation, and that now capture nothing.")
+        int allocationSitesRemoved;
+    }
+}
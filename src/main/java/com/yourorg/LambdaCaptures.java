@@ -0,0 +1,282 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.*;
+
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Once methods are made static, the lambdas and method references that used {@code this} only to call them need not
+ * capture it any more. A lambda or method reference that captures nothing is allocated once and reused, where one
+ * that captures is allocated every time it is evaluated.
+ * <p>
+ * In a class whose methods were just made static, {@code this::method} becomes {@code Type::method}, which is also
+ * required for it to compile, and {@code this.method(..)} in a lambda becomes {@code method(..)}. Each method reference
+ * rewritten, and each lambda that called a method made static and now captures nothing, counts as an allocation site
+ * removed. Lambdas are only counted in type attributed trees, where references to locals can be told apart.
+ */
+final class LambdaCaptures {
+    private final Set<String> madeStatic;
+
+    /**
+     * The number of lambdas and method references that allocated on every evaluation and no longer do.
+     */
+    int removedAllocationSites;
+
+    private LambdaCaptures(Set<String> madeStatic) {
+        this.madeStatic = madeStatic;
+    }
+
+    /**
+     * @param before              The class before methods were made static.
+     * @param methodsToMakeStatic The ordinals, in the order methods are visited, of the methods made static.
+     */
+    static LambdaCaptures of(J.ClassDeclaration before, BitSet methodsToMakeStatic) {
+        Set<String> names = new HashSet<>();
+        new JavaIsoVisitor<Set<String>>() {
+            private int ordinal;
+
+            @Override
+            public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, Set<String> names) {
+                if (methodsToMakeStatic.get(ordinal++)) {
+                    names.add(method.getSimpleName());
+                }
+                return super.visitMethodDeclaration(method, names);
+            }
+        }.visit(before, names);
+        return new LambdaCaptures(names);
+    }
+
+    /**
+     * @param after The class with static modifiers added.
+     */
+    J.ClassDeclaration removeThisCaptures(J.ClassDeclaration after) {
+        return (J.ClassDeclaration) new JavaIsoVisitor<Integer>() {
+            @Override
+            public J.MemberReference visitMemberReference(J.MemberReference memberRef, Integer p) {
+                J.MemberReference m = super.visitMemberReference(memberRef, p);
+                String name = m.getReference().getSimpleName();
+                if (!isThis(m.getContaining()) || !madeStatic.contains(name)) {
+                    return m;
+                }
+                J.ClassDeclaration owner = innermostClass(getCursor());
+                if (owner == null || !allStatic(owner.getBody(), name)) {
+                    return m;
+                }
+                removedAllocationSites++;
+                return m.withContaining(TypeTree.build(owner.getSimpleName())
+                        .withType(owner.getType())
+                        .withPrefix(m.getContaining().getPrefix()));
+            }
+
+            @Override
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, Integer p) {
+                J.MethodInvocation m = super.visitMethodInvocation(method, p);
+                if (m.getSelect() == null || !isThis(m.getSelect()) || !madeStatic.contains(m.getSimpleName()) ||
+                    getCursor().firstEnclosing(J.Lambda.class) == null) {
+                    return m;
+                }
+                J.Block body = innermostClassBody(getCursor());
+                return body != null && allStatic(body, m.getSimpleName()) ? m.withSelect(null) : m;
+            }
+
+            @Override
+            public J.Lambda visitLambda(J.Lambda lambda, Integer p) {
+                J.Lambda l = super.visitLambda(lambda, p);
+                if (l.getType() != null && callsMethodMadeStatic(l) && capturesNothing(l, getCursor())) {
+                    removedAllocationSites++;
+                }
+                return l;
+            }
+        }.visit(after, 0);
+    }
+
+    private boolean callsMethodMadeStatic(J.Lambda lambda) {
+        AtomicBoolean found = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, AtomicBoolean found) {
+                if (method.getSelect() == null && madeStatic.contains(method.getSimpleName())) {
+                    found.set(true);
+                }
+                return super.visitMethodInvocation(method, found);
+            }
+        }.visit(lambda.getBody(), found);
+        return found.get();
+    }
+
+    /**
+     * Conservative: anything that might need {@code this} or a variable declared outside the lambda is a capture.
+     */
+    private static boolean capturesNothing(J.Lambda lambda, Cursor cursor) {
+        Set<String> declaredInside = new HashSet<>();
+        new JavaIsoVisitor<Set<String>>() {
+            @Override
+            public J.VariableDeclarations.NamedVariable visitVariable(J.VariableDeclarations.NamedVariable variable, Set<String> names) {
+                names.add(variable.getSimpleName());
+                return super.visitVariable(variable, names);
+            }
+        }.visit(lambda, declaredInside);
+        // untyped lambda parameters may be bare identifiers
+        for (J parameter : lambda.getParameters().getParameters()) {
+            if (parameter instanceof J.Identifier) {
+                declaredInside.add(((J.Identifier) parameter).getSimpleName());
+            }
+        }
+
+        AtomicBoolean captures = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public J.Identifier visitIdentifier(J.Identifier identifier, AtomicBoolean captures) {
+                String name = identifier.getSimpleName();
+                JavaType.Variable fieldType = identifier.getFieldType();
+                if ("this".equals(name) || "super".equals(name)) {
+                    captures.set(true);
+                } else if (fieldType != null && !declaredInside.contains(name) && !fieldType.hasFlags(Flag.Static) &&
+                           !isQualifiedName(identifier, getCursor())) {
+                    // a local or parameter from outside the lambda, or an instance field
+                    captures.set(true);
+                }
+                return identifier;
+            }
+
+            @Override
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, AtomicBoolean captures) {
+                if (method.getSelect() == null && !isStatic(method, cursor)) {
+                    captures.set(true);
+                }
+                return super.visitMethodInvocation(method, captures);
+            }
+
+            @Override
+            public J.NewClass visitNewClass(J.NewClass newClass, AtomicBoolean captures) {
+                // an anonymous class, or an instance of an inner class, holds an enclosing instance
+                if (newClass.getBody() != null || newClass.getClazz() != null && isInnerClass(newClass.getClazz(), cursor)) {
+                    captures.set(true);
+                }
+                return super.visitNewClass(newClass, captures);
+            }
+        }.visit(lambda.getBody(), captures, cursor);
+        return !captures.get();
+    }
+
+    private static boolean isQualifiedName(J.Identifier identifier, Cursor cursor) {
+        J parent = cursor.dropParentUntil(J.class::isInstance).getValue();
+        return parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier;
+    }
+
+    /**
+     * A method declared in an enclosing class is static by its declaration, which is up to date. One that is
+     * inherited is static by its type.
+     */
+    private static boolean isStatic(J.MethodInvocation method, Cursor cursor) {
+        for (Iterator<Cursor> it = cursor.getPathAsCursors(); it.hasNext(); ) {
+            Object value = it.next().getValue();
+            J.Block body = value instanceof J.ClassDeclaration ? ((J.ClassDeclaration) value).getBody() :
+                    value instanceof J.NewClass ? ((J.NewClass) value).getBody() : null;
+            if (body != null && declaresMethod(body, method.getSimpleName())) {
+                return allStatic(body, method.getSimpleName());
+            }
+        }
+        return method.getMethodType() != null && method.getMethodType().hasFlags(Flag.Static);
+    }
+
+    private static boolean isInnerClass(TypeTree clazz, Cursor cursor) {
+        J tree = clazz instanceof J.ParameterizedType ? ((J.ParameterizedType) clazz).getClazz() : clazz;
+        if (!(tree instanceof J.Identifier)) {
+            return false;
+        }
+        String name = ((J.Identifier) tree).getSimpleName();
+        for (Iterator<Cursor> it = cursor.getPathAsCursors(); it.hasNext(); ) {
+            Object value = it.next().getValue();
+            if (value instanceof J.ClassDeclaration) {
+                for (Statement statement : ((J.ClassDeclaration) value).getBody().getStatements()) {
+                    if (statement instanceof J.ClassDeclaration && ((J.ClassDeclaration) statement).getSimpleName().equals(name)) {
+                        J.ClassDeclaration member = (J.ClassDeclaration) statement;
+                        return member.getKind() == J.ClassDeclaration.Kind.Type.Class && !member.hasModifier(J.Modifier.Type.Static);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isThis(Expression expression) {
+        return expression instanceof J.Identifier && "this".equals(((J.Identifier) expression).getSimpleName());
+    }
+
+    private static boolean declaresMethod(J.Block body, String name) {
+        for (Statement statement : body.getStatements()) {
+            if (statement instanceof J.MethodDeclaration && ((J.MethodDeclaration) statement).getSimpleName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the body declares a method by that name, and every overload of it is static.
+     */
+    private static boolean allStatic(J.Block body, String name) {
+        boolean found = false;
+        for (Statement statement : body.getStatements()) {
+            if (statement instanceof J.MethodDeclaration && ((J.MethodDeclaration) statement).getSimpleName().equals(name)) {
+                if (!((J.MethodDeclaration) statement).hasModifier(J.Modifier.Type.Static)) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return The class whose {@code this} is meant at the cursor, or null if it is an anonymous class.
+     */
+    @Nullable
+    private static J.ClassDeclaration innermostClass(Cursor cursor) {
+        for (Iterator<Cursor> it = cursor.getPathAsCursors(); it.hasNext(); ) {
+            Object value = it.next().getValue();
+            if (value instanceof J.ClassDeclaration) {
+                return (J.ClassDeclaration) value;
+            } else if (value instanceof J.NewClass && ((J.NewClass) value).getBody() != null) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static J.Block innermostClassBody(Cursor cursor) {
+        for (Iterator<Cursor> it = cursor.getPathAsCursors(); it.hasNext(); ) {
+            Object value = it.next().getValue();
+            if (value instanceof J.ClassDeclaration) {
+                return ((J.ClassDeclaration) value).getBody();
+            } else if (value instanceof J.NewClass && ((J.NewClass) value).getBody() != null) {
+                return ((J.NewClass) value).getBody();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.MethodMatcher;
+import org.openrewrite.java.tree.*;
+import org.openrewrite.marker.SearchResult;
+
+import java.util.*;
+
+/**
+ * The companion of {@link MakeFalseInstanceMethodsStatic} for fields: a final instance field whose initializer is the
+ * same for every instance stores one copy of the same value per instance. Run before
+ * {@link MakeFalseInstanceMethodsStatic}, the methods that only read such fields no longer count as using instance
+ * state.
+ * <p>
+ * A shared value must not be mutable, so an initializer qualifies only if it is built from literals, class literals,
+ * static final fields and the results of a few factories known to return immutable values. The field's own class
+ * must not be one whose instance fields are read or written by reflection.
+ */
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class MakeConstantInstanceFieldsStatic extends Recipe {
+
+    private static final MethodMatcher[] IMMUTABLE_FACTORIES = {
+            new MethodMatcher("org.slf4j.LoggerFactory getLogger(..)"),
+            new MethodMatcher("java.util.logging.Logger getLogger(..)"),
+            new MethodMatcher("org.apache.logging.log4j.LogManager getLogger(..)"),
+            new MethodMatcher("org.apache.commons.logging.LogFactory getLog(..)"),
+            new MethodMatcher("java.util.Collections empty*()"),
+            new MethodMatcher("java.util.List of(..)"),
+            new MethodMatcher("java.util.Set of(..)"),
+            new MethodMatcher("java.util.Map of(..)"),
+            new MethodMatcher("java.util.regex.Pattern compile(..)"),
+            new MethodMatcher("java.time.Duration of*(..)"),
+            new MethodMatcher("java.math.BigDecimal valueOf(..)"),
+            new MethodMatcher("java.math.BigInteger valueOf(..)"),
+            new MethodMatcher("java.lang.Class getName()"),
+            new MethodMatcher("java.lang.Class getSimpleName()")
+    };
+
+    private static final MethodMatcher GET_FIELD = new MethodMatcher("java.lang.Class getField(String)");
+    private static final MethodMatcher GET_DECLARED_FIELD = new MethodMatcher("java.lang.Class getDeclaredField(String)");
+
+    /**
+     * Class annotations that no framework takes as a reason to read or write instance fields.
+     */
+    private static final Set<String> INERT_ANNOTATIONS = new HashSet<>(Arrays.asList("Deprecated", "SuppressWarnings"));
+
+    @Override
+    public String getDisplayName() {
+        return "Make constant instance fields static";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Change final instance fields to static final if their initializer is a constant, or an immutable value " +
+               "that does not depend on the instance. Fields of serializable or annotated classes, annotated fields, and " +
+               "fields looked up by name through reflection are left alone.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return new HasInitializedFinalInstanceField();
+    }
+
+    @Override
+    public JavaVisitor<ExecutionContext> getVisitor() {
+        return new MakeConstantInstanceFieldsStaticVisitor();
+    }
+
+    private static class HasInitializedFinalInstanceField extends JavaIsoVisitor<ExecutionContext> {
+        @Override
+        public J.VariableDeclarations visitVariableDeclarations(J.VariableDeclarations multiVariable, ExecutionContext ctx) {
+            if (multiVariable.hasModifier(J.Modifier.Type.Final) && !multiVariable.hasModifier(J.Modifier.Type.Static) &&
+                multiVariable.getVariables().get(0).getInitializer() != null && isField()) {
+                return SearchResult.found(multiVariable);
+            }
+            return super.visitVariableDeclarations(multiVariable, ctx);
+        }
+
+        private boolean isField() {
+            Object declaredIn = getCursor().dropParentUntil(J.class::isInstance).dropParentUntil(J.class::isInstance).getValue();
+            return declaredIn instanceof J.ClassDeclaration || declaredIn instanceof J.NewClass;
+        }
+    }
+
+    private static class MakeConstantInstanceFieldsStaticVisitor extends JavaIsoVisitor<ExecutionContext> {
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext ctx) {
+            boolean staticMembersInInnerClasses = MakeFalseInstanceMethodsStatic.allowsStaticMembersInInnerClasses(cu);
+            Set<String> reflectivelyNamed = reflectivelyNamedFields(cu);
+            Set<J.VariableDeclarations> fieldsToMakeStatic = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (J.ClassDeclaration clazz : cu.getClasses()) {
+                for (UsageAnalysis.ClassUsage scope : UsageAnalysis.of(clazz, false, ctx).getClasses()) {
+                    if (scope.instanceFieldCount > 0) {
+                        fieldsToMakeStatic.addAll(fieldsToMakeStatic(scope, TypeHierarchy.of(ctx), staticMembersInInnerClasses, reflectivelyNamed));
+                    }
+                }
+            }
+            if (fieldsToMakeStatic.isEmpty()) {
+                return cu;
+            }
+            return (J.CompilationUnit) new JavaIsoVisitor<Set<J.VariableDeclarations>>() {
+                @Override
+                public J.VariableDeclarations visitVariableDeclarations(J.VariableDeclarations multiVariable, Set<J.VariableDeclarations> fieldsToMakeStatic) {
+                    J.VariableDeclarations v = super.visitVariableDeclarations(multiVariable, fieldsToMakeStatic);
+                    return fieldsToMakeStatic.contains(multiVariable) ?
+                            v.withModifiers(MakeFalseInstanceMethodsStatic.withStaticModifier(v.getModifiers())) :
+                            v;
+                }
+            }.visit(cu, fieldsToMakeStatic);
+        }
+    }
+
+    /**
+     * Fields are considered in the order they are declared. A static initializer may only refer by simple name to
+     * the static fields declared before it, including those made static by this same pass.
+     */
+    static List<J.VariableDeclarations> fieldsToMakeStatic(UsageAnalysis.ClassUsage scope, TypeHierarchy hierarchy,
+                                                          boolean staticMembersInInnerClasses, Set<String> reflectivelyNamed) {
+        if (scope.isInterface || isReflectionSensitive(scope.getDeclaration(), hierarchy)) {
+            return Collections.emptyList();
+        }
+        // before Java 16, only constant variables may be static in inner, local and anonymous classes
+        boolean constantsOnly = scope.isInner() && !staticMembersInInnerClasses;
+
+        Set<String> declaredHere = new HashSet<>();
+        addFields(scope.body, declaredHere, false);
+        Set<String> staticFinalNames = new HashSet<>();
+        for (UsageAnalysis.ClassUsage s = scope.enclosing; s != null && !constantsOnly; s = s.enclosing) {
+            addFields(s.body, staticFinalNames, true);
+        }
+        // a field of this class hides any field of an enclosing class by the same name
+        staticFinalNames.removeAll(declaredHere);
+        // a static field may not refer to the type parameters of its class or of anything enclosing it
+        Set<String> typeParameters = MakeInnerClassesStatic.typeParametersInScope(scope);
+
+        List<J.VariableDeclarations> fieldsToMakeStatic = new ArrayList<>();
+        for (Statement statement : scope.body.getStatements()) {
+            if (!(statement instanceof J.VariableDeclarations)) {
+                continue;
+            }
+            J.VariableDeclarations vd = (J.VariableDeclarations) statement;
+            if (vd.hasModifier(J.Modifier.Type.Static)) {
+                if (vd.hasModifier(J.Modifier.Type.Final)) {
+                    addNames(vd, staticFinalNames);
+                }
+                continue;
+            }
+            if (canBeMadeStatic(vd, staticFinalNames, declaredHere, constantsOnly, reflectivelyNamed) &&
+                !MakeInnerClassesStatic.mentionsAny(vd, typeParameters)) {
+                fieldsToMakeStatic.add(vd);
+                addNames(vd, staticFinalNames);
+            }
+        }
+        return fieldsToMakeStatic;
+    }
+
+    private static boolean canBeMadeStatic(J.VariableDeclarations vd, Set<String> staticFinalNames, Set<String> declaredHere,
+                                           boolean constantsOnly, Set<String> reflectivelyNamed) {
+        if (!vd.hasModifier(J.Modifier.Type.Final) || !vd.getLeadingAnnotations().isEmpty() ||
+            constantsOnly && !isPrimitiveOrString(vd.getTypeExpression())) {
+            return false;
+        }
+        for (J.VariableDeclarations.NamedVariable variable : vd.getVariables()) {
+            if (variable.getInitializer() == null || reflectivelyNamed.contains(variable.getSimpleName()) ||
+                !isSharedValue(variable.getInitializer(), staticFinalNames, declaredHere, constantsOnly)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Whether the expression evaluates to an equal, immutable value every time, without reference to an
+     * instance. With {@code constantsOnly}, whether it is a constant expression.
+     */
+    private static boolean isSharedValue(Expression expression, Set<String> staticFinalNames, Set<String> declaredHere,
+                                         boolean constantsOnly) {
+        if (expression instanceof J.Literal) {
+            return true;
+        } else if (expression instanceof J.Identifier) {
+            J.Identifier identifier = (J.Identifier) expression;
+            JavaType.Variable fieldType = identifier.getFieldType();
+            // a static final field of another class may be referred to by simple name when it is inherited or
+            // statically imported, but one of this class only once it is declared
+            return staticFinalNames.contains(identifier.getSimpleName()) ||
+                   !constantsOnly && fieldType != null && fieldType.hasFlags(Flag.Static, Flag.Final) &&
+                   !declaredHere.contains(identifier.getSimpleName());
+        } else if (expression instanceof J.FieldAccess) {
+            J.FieldAccess fieldAccess = (J.FieldAccess) expression;
+            if ("class".equals(fieldAccess.getSimpleName())) {
+                return !constantsOnly;
+            }
+            JavaType.Variable fieldType = fieldAccess.getName().getFieldType();
+            return !constantsOnly && fieldType != null && fieldType.hasFlags(Flag.Static, Flag.Final) &&
+                   isTypeReference(fieldAccess.getTarget());
+        } else if (expression instanceof J.Parentheses) {
+            J tree = ((J.Parentheses<?>) expression).getTree();
+            return tree instanceof Expression && isSharedValue((Expression) tree, staticFinalNames, declaredHere, constantsOnly);
+        } else if (expression instanceof J.Binary) {
+            J.Binary binary = (J.Binary) expression;
+            return isSharedValue(binary.getLeft(), staticFinalNames, declaredHere, constantsOnly) &&
+                   isSharedValue(binary.getRight(), staticFinalNames, declaredHere, constantsOnly);
+        } else if (expression instanceof J.Unary) {
+            J.Unary unary = (J.Unary) expression;
+            switch (unary.getOperator()) {
+                case PreIncrement:
+                case PreDecrement:
+                case PostIncrement:
+                case PostDecrement:
+                    return false;
+                default:
+                    return isSharedValue(unary.getExpression(), staticFinalNames, declaredHere, constantsOnly);
+            }
+        } else if (expression instanceof J.Ternary) {
+            J.Ternary ternary = (J.Ternary) expression;
+            return isSharedValue(ternary.getCondition(), staticFinalNames, declaredHere, constantsOnly) &&
+                   isSharedValue(ternary.getTruePart(), staticFinalNames, declaredHere, constantsOnly) &&
+                   isSharedValue(ternary.getFalsePart(), staticFinalNames, declaredHere, constantsOnly);
+        } else if (expression instanceof J.TypeCast) {
+            return isSharedValue(((J.TypeCast) expression).getExpression(), staticFinalNames, declaredHere, constantsOnly);
+        } else if (expression instanceof J.MethodInvocation) {
+            J.MethodInvocation method = (J.MethodInvocation) expression;
+            Expression select = method.getSelect();
+            if (constantsOnly || !isImmutableFactory(method) ||
+                select != null && !isTypeReference(select) && !isSharedValue(select, staticFinalNames, declaredHere, false)) {
+                return false;
+            }
+            for (Expression argument : method.getArguments()) {
+                if (!(argument instanceof J.Empty) && !isSharedValue(argument, staticFinalNames, declaredHere, false)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isImmutableFactory(J.MethodInvocation method) {
+        for (MethodMatcher factory : IMMUTABLE_FACTORIES) {
+            if (factory.matches(method)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTypeReference(Expression target) {
+        if (target instanceof J.Identifier) {
+            J.Identifier identifier = (J.Identifier) target;
+            return identifier.getFieldType() == null && identifier.getType() instanceof JavaType.FullyQualified;
+        }
+        return target instanceof J.FieldAccess && ((J.FieldAccess) target).getName().getFieldType() == null &&
+               target.getType() instanceof JavaType.FullyQualified;
+    }
+
+    private static boolean isPrimitiveOrString(@Nullable TypeTree typeExpression) {
+        return typeExpression instanceof J.Primitive ||
+               typeExpression instanceof J.Identifier && "String".equals(((J.Identifier) typeExpression).getSimpleName());
+    }
+
+    /**
+     * Serializable classes lose the field from their serialized form, and annotated classes may be entities, bound
+     * or injected into, or have accessors generated for their fields.
+     */
+    private static boolean isReflectionSensitive(@Nullable J.ClassDeclaration clazz, TypeHierarchy hierarchy) {
+        if (clazz == null) {
+            return false;
+        }
+        for (J.Annotation annotation : clazz.getLeadingAnnotations()) {
+            if (!INERT_ANNOTATIONS.contains(annotation.getSimpleName())) {
+                return true;
+            }
+        }
+        return MakeFalseInstanceMethodsStatic.isSerializable(clazz, hierarchy);
+    }
+
+    private static void addFields(J.Block body, Set<String> names, boolean staticFinalOnly) {
+        for (Statement statement : body.getStatements()) {
+            if (statement instanceof J.VariableDeclarations) {
+                J.VariableDeclarations vd = (J.VariableDeclarations) statement;
+                if (!staticFinalOnly || vd.hasModifier(J.Modifier.Type.Static) && vd.hasModifier(J.Modifier.Type.Final)) {
+                    addNames(vd, names);
+                }
+            }
+        }
+    }
+
+    private static void addNames(J.VariableDeclarations vd, Set<String> names) {
+        for (J.VariableDeclarations.NamedVariable variable : vd.getVariables()) {
+            names.add(variable.getSimpleName());
+        }
+    }
+
+    private static Set<String> reflectivelyNamedFields(J.CompilationUnit cu) {
+        Set<String> names = new HashSet<>();
+        new JavaIsoVisitor<Set<String>>() {
+            @Override
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, Set<String> names) {
+                if ((GET_FIELD.matches(method) || GET_DECLARED_FIELD.matches(method)) &&
+                    method.getArguments().get(0) instanceof J.Literal) {
+                    Object name = ((J.Literal) method.getArguments().get(0)).getValue();
+                    if (name instanceof String) {
+                        names.add((String) name);
+                    }
+                }
+                return super.visitMethodInvocation(method, names);
+            }
+        }.visit(cu, names);
+        return names;
+    }
+}
@@ -15,30 +15,121 @@
  */
 package com.yourorg;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.AllArgsConstructor;
 import lombok.EqualsAndHashCode;
 import lombok.Value;
+import lombok.With;
 import org.openrewrite.*;
+import org.openrewrite.internal.ListUtils;
 import org.openrewrite.internal.lang.Nullable;
 import org.openrewrite.java.JavaIsoVisitor;
 import org.openrewrite.java.JavaVisitor;
 import org.openrewrite.java.MethodMatcher;
+import org.openrewrite.java.marker.JavaVersion;
 import org.openrewrite.java.tree.*;
 import org.openrewrite.marker.Markers;
+import org.openrewrite.marker.SearchResult;
 
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.util.Collections.emptyList;
 import static org.openrewrite.Tree.randomId;
 
 @Value
 @EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor(onConstructor_ = {@JsonCreator})
 public class MakeFalseInstanceMethodsStatic extends Recipe {
 
     private static final MethodMatcher SERIALIZABLE_WRITE_OBJECT = new MethodMatcher("* writeObject(java.io.ObjectOutputStream)");
     private static final MethodMatcher SERIALIZABLE_READ_OBJECT = new MethodMatcher("* readObject(java.io.ObjectInputStream)");
     private static final MethodMatcher SERIALIZABLE_READ_OBJECT_NO_DATA = new MethodMatcher("* readObjectNoData()");
 
+    /**
+     * Part of every analysis cache key. Change it whenever a change to the analysis could change a verdict.
+     */
+    private static final String ANALYSIS_VERSION = "6";
+
+    private static final String REPORTED_SOURCE_FILES = MakeFalseInstanceMethodsStatic.class.getName() + ".reportedSourceFiles";
+
+    @Option(displayName = "Use type attribution",
+            description = "Match field and method references by their attributed types rather than by simple name. " +
+                    "Local variables and parameters that shadow a field no longer prevent a method from being made static. " +
+                    "Unattributed references fall back to simple name matching.",
+            required = false)
+    @Nullable
+    @With
+    Boolean useTypeAttribution;
+
+    @Option(displayName = "Parallel threshold",
+            description = "Analyze the classes of a compilation unit in parallel when they declare at least this many members in total. " +
+                    "Results are identical to sequential analysis. When not set, classes are always analyzed sequentially.",
+            required = false,
+            example = "500")
+    @Nullable
+    @With
+    Integer parallelThreshold;
+
+    @Option(displayName = "Analysis cache directory",
+            description = "A local directory in which to cache, for each class, which of its methods can be made static. " +
+                    "Classes whose source is unchanged since a previous run are not analyzed again. " +
+                    "The directory may be shared by concurrent runs.",
+            required = false,
+            example = "/tmp/make-false-instance-methods-static")
+    @Nullable
+    @With
+    String analysisCacheDirectory;
+
+    @Option(displayName = "Analysis cache size",
+            description = "The maximum number of classes kept in the analysis cache before the least recently used are evicted. " +
+                    "Defaults to 100,000.",
+            required = false,
+            example = "100000")
+    @Nullable
+    @With
+    Integer analysisCacheMaxEntries;
+
+    @Option(displayName = "Analysis only",
+            description = "Only report, for every private or final instance method, whether it could be made static " +
+                    "and, if not, what blocks it. No source file is changed, which makes bulk runs cheaper.",
+            required = false)
+    @Nullable
+    @With
+    Boolean analysisOnly;
+
+    @Option(displayName = "Work budget per file",
+            description = "The most work to spend on a single compilation unit, counted in tree elements visited and " +
+                    "propagation steps so that the outcome is the same on every run. A file that needs more is left " +
+                    "unchanged and reported as skipped. When not set, there is no limit.",
+            required = false,
+            example = "5000000")
+    @Nullable
+    @With
+    Integer maxWorkPerFile;
+
+    @Option(displayName = "Changed paths file",
+            description = "A local file listing changed paths one per line, as written by `git diff --name-only`. Only " +
+                    "the listed compilation units are analyzed, along with those declaring a class that extends or " +
+                    "implements a type declared in one of them. Every other file is skipped before any analysis.",
+            required = false,
+            example = "build/changed-files.txt")
+    @Nullable
+    @With
+    String changedPathsFile;
+
+    transient FalseInstanceMethodStatistics statistics = new FalseInstanceMethodStatistics(this);
+    transient StaticMethodCandidates candidates = new StaticMethodCandidates(this);
+    transient SkippedSourceFiles skipped = new SkippedSourceFiles(this);
+
+    public MakeFalseInstanceMethodsStatic() {
+        this(null, null, null, null, null, null, null);
+    }
+
     @Override
     public String getDisplayName() {
         return "Make false instance methods static";
@@ -49,11 +140,38 @@ public class MakeFalseInstanceMethodsStatic extends Recipe {
         return "Change methods to static if they are private or final, access no instance data, and are not one of the excluded serializable methods.";
     }
 
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return new HasCandidateMethod(changedPathsFile);
+    }
+
     @Override
     public JavaVisitor<ExecutionContext> getVisitor() {
         return new MakeFalseInstanceMethodsStaticVisitor();
     }
 
+    /**
+     * Finds files with at least one private or final method that is not already static, in a class of any nesting
+     * level. Interfaces without private methods, and most enums and data classes, are rejected without any per-method
+     * analysis. In incremental mode, files that no change can affect are rejected before even that.
+     */
+    private static class HasCandidateMethod extends JavaIsoVisitor<ExecutionContext> {
+        @Nullable
+        private final String changedPathsFile;
+
+        private HasCandidateMethod(@Nullable String changedPathsFile) {
+            this.changedPathsFile = changedPathsFile;
+        }
+
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext ctx) {
+            if (changedPathsFile != null && !ChangedPaths.of(changedPathsFile, ctx).isAffected(cu, TypeHierarchy.of(ctx))) {
+                return cu;
+            }
+            return hasCandidateMethod(cu) ? SearchResult.found(cu) : cu;
+        }
+    }
+
     private class MakeFalseInstanceMethodsStaticVisitor extends JavaIsoVisitor<ExecutionContext> {
 
         private MakeFalseInstanceMethodsStaticVisitor() {
@@ -61,234 +179,671 @@ public class MakeFalseInstanceMethodsStatic extends Recipe {
 
         @Override
         public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext p) {
-            cu = super.visitCompilationUnit(cu, p);
             List<J.ClassDeclaration> classes = cu.getClasses();
-            List<J.ClassDeclaration> newClasses = new ArrayList<J.ClassDeclaration>();
-
-            for (J.ClassDeclaration clazz : classes) {
-                List<J.VariableDeclarations> instanceVariables = new ArrayList<J.VariableDeclarations>();
-
-                List<J.MethodDeclaration> allMethods = new ArrayList<J.MethodDeclaration>();
-                List<J.MethodDeclaration> methodsEligibleForUpdate = new ArrayList<J.MethodDeclaration>();
-                List<J.MethodDeclaration> instanceMethods = new ArrayList<J.MethodDeclaration>();
+            boolean typeAttributed = Boolean.TRUE.equals(useTypeAttribution);
+            boolean staticMembersInInnerClasses = allowsStaticMembersInInnerClasses(cu);
+            long workBudget = maxWorkPerFile == null ? Long.MAX_VALUE : maxWorkPerFile;
+            if (Boolean.TRUE.equals(analysisOnly)) {
+                reportCandidates(cu, typeAttributed, staticMembersInInnerClasses, workBudget, p);
+                return cu;
+            }
 
-                for (Statement statement : clazz.getBody().getStatements()) {
-                    // aggregate all variable declarations as instance data
-                    if (statement instanceof J.VariableDeclarations) {
-                        J.VariableDeclarations vd = (J.VariableDeclarations) statement;
-                        if (!vd.hasModifier(J.Modifier.Type.Static)) {
-                            instanceVariables.add(vd);
-                        }
-                    }
-                    // aggregate all method declarations and all method declarations that could be marked static
-                    if (statement instanceof J.MethodDeclaration) {
-                        J.MethodDeclaration md = (J.MethodDeclaration) statement;
-                        allMethods.add(md);
-                        boolean methodIsNonOverridable = (md.hasModifier(J.Modifier.Type.Private) || md.hasModifier(J.Modifier.Type.Final));
-                        boolean classImplementsSerializable = clazz.getImplements() != null && clazz.getImplements().stream().anyMatch(i -> i.toString().equals("Serializable"));
-                        boolean methodOverridesSerializableMethod = SERIALIZABLE_WRITE_OBJECT.matches(md, clazz)
-                                || SERIALIZABLE_READ_OBJECT.matches(md, clazz)
-                                || SERIALIZABLE_READ_OBJECT_NO_DATA.matches(md, clazz);
-                        if (methodIsNonOverridable && !(classImplementsSerializable && methodOverridesSerializableMethod)) {
-                            methodsEligibleForUpdate.add(md);
-                        }
+            AnalysisCache cache = analysisCache();
+            String cacheSalt = cache == null ? "" : cacheSalt(cu, typeAttributed, staticMembersInInnerClasses);
+            Cursor cursor = getCursor();
+
+            // each class counts into its own statistics, so that classes analyzed in parallel share nothing
+            RunStatistics[] classStatistics = new RunStatistics[classes.size()];
+            Map<String, int[]> verdicts = new ConcurrentHashMap<>();
+            List<J.ClassDeclaration> newClasses;
+            try {
+                if (analyzeInParallel(classes)) {
+                    // classes are analyzed independently of one another; an ordered collect keeps them in source order.
+                    // each may use the whole budget, and the file is checked against it once all are done
+                    newClasses = IntStream.range(0, classes.size()).parallel()
+                            .mapToObj(i -> makeFalseInstanceMethodsStatic(classes.get(i), typeAttributed, staticMembersInInnerClasses,
+                                    cache, cacheSalt, verdicts, cursor, workBudget, p, classStatistics[i] = new RunStatistics()))
+                            .collect(Collectors.toList());
+                } else {
+                    newClasses = new ArrayList<J.ClassDeclaration>(classes.size());
+                    long work = 0;
+                    for (int i = 0; i < classes.size(); i++) {
+                        newClasses.add(makeFalseInstanceMethodsStatic(classes.get(i), typeAttributed, staticMembersInInnerClasses,
+                                cache, cacheSalt, verdicts, cursor, workBudget - work, p, classStatistics[i] = new RunStatistics()));
+                        work += classStatistics[i].work();
                     }
                 }
+            } catch (UsageAnalysis.WorkBudgetExceeded e) {
+                return skip(cu, workBudget, p);
+            }
 
-                // find any methods that reference instance variables and add them to the list of instance methods
-                for (J.MethodDeclaration method : allMethods) {
-                    setCursor(new Cursor(getCursor(), method));
-                    Cursor methodScope = getCursor();
-                    for (J.VariableDeclarations instanceVariable : instanceVariables) {
-                        J.Identifier variableName = instanceVariable.getVariables().get(0).getName();
-                        List<J> readReferences = References.findRhsReferences(methodScope.getValue(), variableName);
-                        List<Statement> assignmentReferences = References.findLhsReferences(methodScope.getValue(), variableName);
-                        if (readReferences.size() > 0 || assignmentReferences.size() > 0) {
-                            instanceMethods.add(method);
-                            methodsEligibleForUpdate.remove(method);
-                        }
-                    }
+            RunStatistics fileStatistics = new RunStatistics();
+            for (RunStatistics s : classStatistics) {
+                fileStatistics.add(s);
+            }
+            if (fileStatistics.work() > workBudget) {
+                return skip(cu, workBudget, p);
+            }
+            if (cache != null) {
+                // only once the whole file is within budget. a cached verdict costs no work, so caching the classes of
+                // a skipped file would let a later run spend the budget on the rest of it, and rewrite the file
+                long start = System.nanoTime();
+                verdicts.forEach(cache::put);
+                fileStatistics.cacheNanos += System.nanoTime() - start;
+            }
+            if (firstReport(statistics, cu, p)) {
+                statistics.insertRow(p, fileStatistics.toRow(cu.getSourcePath().toString()));
+            }
+
+            for (int i = 0; i < classes.size(); i++) {
+                if (newClasses.get(i) != classes.get(i)) {
+                    return cu.withClasses(newClasses);
                 }
+            }
+            return cu;
+        }
 
-                List<J.MethodDeclaration> newInstanceMethods = new ArrayList<J.MethodDeclaration>();
-                newInstanceMethods.addAll(instanceMethods);
-
-                // use this while loop to continue scanning the list of eligible methods to see if any of them call
-                // an instance method in which case they'll be removed. each loop might add more instance methods to check.
-                // once no new instance methods have been added, any remaining eligible methods can be marked static
-                while (newInstanceMethods.size() > 0) {
-                    newInstanceMethods.clear(); // reset newInstanceMethods so that it will only contain this iteration's new methods
-                    List<J.MethodDeclaration> ineligibleMethods = new ArrayList<J.MethodDeclaration>();
-                    for (J.MethodDeclaration method : methodsEligibleForUpdate) {
-                        setCursor(new Cursor(getCursor(), method));
-                        Cursor methodScope = getCursor();
-                        for (J.MethodDeclaration instanceMethod : instanceMethods) {
-                            J.Identifier instanceMethodName = instanceMethod.getName();
-                            List<J> readReferences = References.findRhsReferences(methodScope.getValue(), instanceMethodName);
-                            List<Statement> assignmentReferences = References.findLhsReferences(methodScope.getValue(), instanceMethodName);
-                            if (readReferences.size() > 0 || assignmentReferences.size() > 0) {
-                                newInstanceMethods.add(method);
-                                ineligibleMethods.add(method);
-                            }
-                        }
-                        instanceMethods.addAll(newInstanceMethods);
-                    }
-                    methodsEligibleForUpdate.removeAll(ineligibleMethods);
+        /**
+         * Neither the analysis cache, which holds verdicts but not their reasons, nor the rewrite is involved. Only
+         * reference scanning counts against the work budget.
+         */
+        private void reportCandidates(J.CompilationUnit cu, boolean typeAttributed, boolean staticMembersInInnerClasses,
+                                      long workBudget, ExecutionContext p) {
+            String sourcePath = cu.getSourcePath().toString();
+            List<StaticMethodCandidates.Row> rows = new ArrayList<>();
+            long work = 0;
+            for (J.ClassDeclaration clazz : cu.getClasses()) {
+                if (!hasCandidateMethod(clazz)) {
+                    continue;
+                }
+                UsageAnalysis analysis;
+                try {
+                    analysis = UsageAnalysis.of(clazz, typeAttributed, workBudget - work, sourcePath, p);
+                } catch (UsageAnalysis.WorkBudgetExceeded e) {
+                    skip(cu, workBudget, p);
+                    return;
+                }
+                work += analysis.visits;
+                blockedReasons(analysis, TypeHierarchy.of(p), staticMembersInInnerClasses).forEach((method, reason) ->
+                        rows.add(new StaticMethodCandidates.Row(sourcePath, method.owner.qualifiedName(typeAttributed),
+                                methodSignature(method.getDeclaration()), visibility(method.getDeclaration()),
+                                reason == null ? "" : reason)));
+            }
+            if (work > workBudget) {
+                skip(cu, workBudget, p);
+                return;
+            }
+            if (firstReport(candidates, cu, p)) {
+                for (StaticMethodCandidates.Row row : rows) {
+                    candidates.insertRow(p, row);
                 }
+            }
+        }
 
-                List<Statement> newStatements = clazz.getBody().getStatements();
-
-                // modify any eligible methods to include static flag
-                for (J.MethodDeclaration eligibleMethod : methodsEligibleForUpdate) {
-                    if (!eligibleMethod.hasModifier(J.Modifier.Type.Static)) {
-                        List<J.Modifier> modifiers = eligibleMethod.getModifiers();
-                        J.Modifier staticModifier = new J.Modifier(randomId(), Space.build(" ", emptyList()), Markers.EMPTY, J.Modifier.Type.Static, emptyList());
-                        modifiers.add(staticModifier);
-                        eligibleMethod = eligibleMethod.withModifiers(modifiers);
-                        int index = clazz.getBody().getStatements().indexOf(eligibleMethod);
-                        newStatements.remove(index);
-                        newStatements.add(index, eligibleMethod);
-                    }
+        private J.CompilationUnit skip(J.CompilationUnit cu, long workBudget, ExecutionContext p) {
+            if (firstReport(skipped, cu, p)) {
+                skipped.insertRow(p, new SkippedSourceFiles.Row(cu.getSourcePath().toString(), cu.getClasses().size(),
+                        members(cu.getClasses()), workBudget));
+            }
+            return cu;
+        }
+
+        /**
+         * A recipe that makes changes is run again over its own output, in another cycle of the same run. The rows
+         * of a source file are written in the first cycle that reaches it, and never again.
+         */
+        private boolean firstReport(DataTable<?> table, J.CompilationUnit cu, ExecutionContext p) {
+            Set<String> reported;
+            synchronized (p) {
+                reported = p.getMessage(REPORTED_SOURCE_FILES);
+                if (reported == null) {
+                    reported = ConcurrentHashMap.newKeySet();
+                    p.putMessage(REPORTED_SOURCE_FILES, reported);
                 }
+            }
+            return reported.add(table.getName() + ' ' + cu.getSourcePath());
+        }
 
-                newClasses.add(clazz.withBody(clazz.getBody().withStatements(newStatements)));
+        private boolean analyzeInParallel(List<J.ClassDeclaration> classes) {
+            return parallelThreshold != null && classes.size() >= 2 && members(classes) >= parallelThreshold;
+        }
 
+        @Nullable
+        private AnalysisCache analysisCache() {
+            if (analysisCacheDirectory == null) {
+                return null;
             }
-            cu = cu.withClasses(newClasses);
-            return cu;
+            return AnalysisCache.open(Paths.get(analysisCacheDirectory), analysisCacheMaxEntries == null ? 100_000 : analysisCacheMaxEntries);
+        }
+
+        /**
+         * With type attribution a verdict can also depend on what the file imports, so imports are part of the key.
+         * The supertypes each class resolves to are added per class, by {@link #hierarchyFacts}.
+         */
+        private String cacheSalt(J.CompilationUnit cu, boolean typeAttributed, boolean staticMembersInInnerClasses) {
+            String implementationVersion = MakeFalseInstanceMethodsStatic.class.getPackage().getImplementationVersion();
+            StringBuilder salt = new StringBuilder(ANALYSIS_VERSION).append('/').append(implementationVersion);
+            if (staticMembersInInnerClasses) {
+                salt.append("/inner");
+            }
+            if (typeAttributed) {
+                salt.append("/typed");
+                for (J.Import anImport : cu.getImports()) {
+                    salt.append('\n').append(anImport.printTrimmed(getCursor()));
+                }
+            }
+            return salt.toString();
         }
     }
 
+    private static int members(List<J.ClassDeclaration> classes) {
+        int members = 0;
+        for (J.ClassDeclaration clazz : classes) {
+            members += clazz.getBody().getStatements().size();
+        }
+        return members;
+    }
 
-    // I borrowed this from RemoveUnusedLocalVariables. Would abstract it out to be shared given more time.
-    private static class References {
-        private static final J.Unary.Type[] incrementKinds = {
-                J.Unary.Type.PreIncrement,
-                J.Unary.Type.PreDecrement,
-                J.Unary.Type.PostIncrement,
-                J.Unary.Type.PostDecrement
-        };
-        private static final Predicate<Cursor> isUnaryIncrementKind = t -> t.getValue() instanceof J.Unary && isIncrementKind(t);
+    /**
+     * @param verdicts Where to put the verdict to cache, if it was not cached already. The caller caches it once the
+     *                 file is known to be within its work budget.
+     * @param maxWork  The most work the class may take, in tree elements visited and propagation steps.
+     * @throws UsageAnalysis.WorkBudgetExceeded If it takes more, before anything is rewritten.
+     */
+    private static J.ClassDeclaration makeFalseInstanceMethodsStatic(J.ClassDeclaration clazz, boolean typeAttributed,
+                                                                     boolean staticMembersInInnerClasses,
+                                                                     @Nullable AnalysisCache cache, String cacheSalt,
+                                                                     Map<String, int[]> verdicts, Cursor parent,
+                                                                     long maxWork, ExecutionContext ctx, RunStatistics statistics) {
+        if (!hasCandidateMethod(clazz)) {
+            return clazz;
+        }
 
-        private static boolean isIncrementKind(Cursor tree) {
-            if (tree.getValue() instanceof J.Unary) {
-                J.Unary unary = tree.getValue();
-                return Arrays.stream(incrementKinds).anyMatch(kind -> kind == unary.getOperator());
+        String sourcePath = parent.firstEnclosingOrThrow(J.CompilationUnit.class).getSourcePath().toString();
+        String cacheKey = null;
+        if (cache != null) {
+            long start = System.nanoTime();
+            cacheKey = AnalysisCache.key(cacheSalt + hierarchyFacts(clazz, TypeHierarchy.of(ctx)), clazz.printTrimmed(parent));
+            int[] verdict = cache.get(cacheKey);
+            statistics.cacheNanos += System.nanoTime() - start;
+            if (verdict != null) {
+                BitSet methodsToMakeStatic = new BitSet();
+                for (int ordinal : verdict) {
+                    methodsToMakeStatic.set(ordinal);
+                }
+                statistics.cachedClasses++;
+                return addStaticModifiers(clazz, methodsToMakeStatic, sourcePath, typeAttributed, statistics);
             }
-            return false;
         }
 
-        private static @Nullable Cursor dropParentWhile(Predicate<Object> valuePredicate, Cursor cursor) {
-            while (cursor != null && valuePredicate.test(cursor.getValue())) {
-                cursor = cursor.getParent();
-            }
-            return cursor;
+        long start = System.nanoTime();
+        UsageAnalysis analysis = UsageAnalysis.of(clazz, typeAttributed, maxWork, sourcePath, ctx);
+        long scanned = System.nanoTime();
+        Object event = PhaseEvents.begin(PhaseEvents.PROPAGATION);
+        long fixpointIterations = statistics.fixpointIterations;
+        BitSet methodsToMakeStatic = propagateInstanceUsage(analysis, TypeHierarchy.of(ctx), staticMembersInInnerClasses, statistics);
+        if (event != null) {
+            PhaseEvents.commit(event, sourcePath, className(clazz, typeAttributed), statistics.fixpointIterations - fixpointIterations);
+        }
+        statistics.referenceScanNanos += scanned - start;
+        statistics.propagationNanos += System.nanoTime() - scanned;
+        statistics.add(analysis);
+        if (statistics.work() > maxWork) {
+            throw new UsageAnalysis.WorkBudgetExceeded();
         }
 
-        private static @Nullable Cursor dropParentUntil(Predicate<Object> valuePredicate, Cursor cursor) {
-            while (cursor != null && !valuePredicate.test(cursor.getValue())) {
-                cursor = cursor.getParent();
+        if (cacheKey != null) {
+            verdicts.put(cacheKey, methodsToMakeStatic.stream().toArray());
+        }
+        return addStaticModifiers(clazz, methodsToMakeStatic, sourcePath, typeAttributed, statistics);
+    }
+
+    /**
+     * Whether a class is serializable, and so which of its methods are excluded, depends on supertypes that may be
+     * declared in other files. Their resolved names, for the class and every class nested in it, are part of the cache
+     * key, so that a verdict is not reused once a supertype starts or stops implementing {@code Serializable}.
+     */
+    private static String hierarchyFacts(J.ClassDeclaration clazz, TypeHierarchy hierarchy) {
+        StringBuilder facts = new StringBuilder();
+        new JavaIsoVisitor<StringBuilder>() {
+            @Override
+            public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, StringBuilder facts) {
+                JavaType.FullyQualified type = classDecl.getType();
+                if (type != null) {
+                    facts.append('\n').append(type.getFullyQualifiedName()).append(" extends ")
+                            .append(String.join(",", new TreeSet<>(hierarchy.supertypes(type))));
+                }
+                return super.visitClassDeclaration(classDecl, facts);
             }
-            return cursor;
+        }.visit(clazz, facts);
+        return facts.toString();
+    }
+
+    private static J.ClassDeclaration addStaticModifiers(J.ClassDeclaration clazz, BitSet methodsToMakeStatic, String sourcePath,
+                                                         boolean typeAttributed, RunStatistics statistics) {
+        long start = System.nanoTime();
+        Object event = PhaseEvents.begin(PhaseEvents.REWRITE);
+        J.ClassDeclaration c = addStaticModifiers(clazz, methodsToMakeStatic);
+        if (c != clazz) {
+            LambdaCaptures captures = LambdaCaptures.of(clazz, methodsToMakeStatic);
+            c = captures.removeThisCaptures(c);
+            statistics.allocationSitesRemoved += captures.removedAllocationSites;
         }
+        statistics.modifierRewriteNanos += System.nanoTime() - start;
+        statistics.methodsMadeStatic += methodsToMakeStatic.cardinality();
+        if (event != null) {
+            PhaseEvents.commit(event, sourcePath, className(clazz, typeAttributed), methodsToMakeStatic.cardinality());
+        }
+        return c;
+    }
+
+    private static String className(J.ClassDeclaration clazz, boolean typeAttributed) {
+        return typeAttributed && clazz.getType() != null ? clazz.getType().getFullyQualifiedName() : clazz.getSimpleName();
+    }
+
+    /**
+     * @return The ordinals of the eligible methods that neither use instance state nor call a method that does.
+     */
+    static BitSet propagateInstanceUsage(UsageAnalysis analysis, TypeHierarchy hierarchy, boolean staticMembersInInnerClasses,
+                                         @Nullable RunStatistics statistics) {
+        BitSet methodsToMakeStatic = new BitSet(analysis.methodCount);
+        for (UsageAnalysis.ClassUsage scope : analysis.classes) {
+            List<UsageAnalysis.MethodUsage> methods = scope.methods;
+            int methodCount = methods.size();
+            BitSet eligible = eligibleMethods(scope, hierarchy, staticMembersInInnerClasses);
+            if (eligible.isEmpty()) {
+                continue;
+            }
+            UsageAnalysis.IntList[] callers = CallGraph.callers(scope);
+
+            // any method that references instance variables or this uses instance state directly, one named by a
+            // method reference with another receiver must keep its shape, and an instance method that can't be made
+            // static, such as an overridable or abstract one, needs an instance to be called
+            BitSet usesInstanceState = new BitSet(methodCount);
+            int[] worklist = new int[methodCount];
+            int worklistSize = 0;
+            for (int m = 0; m < methodCount; m++) {
+                UsageAnalysis.MethodUsage method = methods.get(m);
+                if (method.usesThis || method.referencedWithReceiver || method.referencesAny(scope.instanceVariables) ||
+                    !eligible.get(m) && isInstanceMethod(method.getDeclaration())) {
+                    usesInstanceState.set(m);
+                    worklist[worklistSize++] = m;
+                }
+            }
+
+            // spread instance-ness backwards along call edges: an eligible method that calls an instance method
+            // is itself an instance method. each method enters the worklist at most once, so it never overflows.
+            while (worklistSize > 0) {
+                if (statistics != null) {
+                    statistics.fixpointIterations++;
+                }
+                UsageAnalysis.IntList callersOfMethod = callers[worklist[--worklistSize]];
+                for (int c = 0; callersOfMethod != null && c < callersOfMethod.size; c++) {
+                    int caller = callersOfMethod.values[c];
+                    if (eligible.get(caller) && !usesInstanceState.get(caller)) {
+                        usesInstanceState.set(caller);
+                        worklist[worklistSize++] = caller;
+                    }
+                }
+            }
 
-        private static boolean isRhsValue(Cursor tree) {
-            if (!(tree.getValue() instanceof J.Identifier)) {
-                return false;
+            for (int m = eligible.nextSetBit(0); m >= 0; m = eligible.nextSetBit(m + 1)) {
+                if (!usesInstanceState.get(m) && methods.get(m).ordinal >= 0) {
+                    methodsToMakeStatic.set(methods.get(m).ordinal);
+                }
             }
+        }
+        return methodsToMakeStatic;
+    }
 
-            Cursor parent = dropParentWhile(J.Parentheses.class::isInstance, tree.getParent());
-            assert parent != null;
-            if (parent.getValue() instanceof J.Assignment) {
-                if (dropParentUntil(J.ControlParentheses.class::isInstance, parent) != null) {
-                    return true;
+    /**
+     * Follows {@link #propagateInstanceUsage}, but keeps the first reason found that each method must stay an
+     * instance method.
+     *
+     * @return Every candidate method, scope by scope in declaration order, mapped to null if it could be made static
+     * and otherwise to what blocks it.
+     */
+    static Map<UsageAnalysis.MethodUsage, String> blockedReasons(UsageAnalysis analysis, TypeHierarchy hierarchy,
+                                                                 boolean staticMembersInInnerClasses) {
+        Map<UsageAnalysis.MethodUsage, String> reasons = new LinkedHashMap<>();
+        for (UsageAnalysis.ClassUsage scope : analysis.classes) {
+            List<UsageAnalysis.MethodUsage> methods = scope.methods;
+            int methodCount = methods.size();
+            BitSet eligible = eligibleMethods(scope, hierarchy, staticMembersInInnerClasses);
+
+            String[] blockedBy = new String[methodCount];
+            int[] worklist = new int[methodCount];
+            int worklistSize = 0;
+            for (int m = 0; m < methodCount; m++) {
+                blockedBy[m] = instanceUsage(scope, methods.get(m));
+                if (blockedBy[m] == null && !eligible.get(m) && isInstanceMethod(methods.get(m).getDeclaration())) {
+                    blockedBy[m] = "is not eligible";
+                }
+                if (blockedBy[m] != null) {
+                    worklist[worklistSize++] = m;
                 }
-                J.Assignment assignment = parent.getValue();
-                return assignment.getVariable() != tree.getValue();
             }
 
-            if (parent.getValue() instanceof J.VariableDeclarations.NamedVariable) {
-                J.VariableDeclarations.NamedVariable namedVariable = parent.getValue();
-                return namedVariable.getName() != tree.getValue();
+            UsageAnalysis.IntList[] callers = CallGraph.callers(scope);
+            while (worklistSize > 0) {
+                int callee = worklist[--worklistSize];
+                UsageAnalysis.IntList callersOfMethod = callers[callee];
+                for (int c = 0; callersOfMethod != null && c < callersOfMethod.size; c++) {
+                    int caller = callersOfMethod.values[c];
+                    if (eligible.get(caller) && blockedBy[caller] == null) {
+                        blockedBy[caller] = "calls instance method " + methods.get(callee).getDeclaration().getSimpleName();
+                        worklist[worklistSize++] = caller;
+                    }
+                }
             }
 
-            if (parent.getValue() instanceof J.AssignmentOperation) {
-                J.AssignmentOperation assignmentOperation = parent.getValue();
-                if (assignmentOperation.getVariable() == tree.getValue()) {
-                    J grandParent = parent.dropParentUntil(J.class::isInstance).getValue();
-                    return (grandParent instanceof Expression || grandParent instanceof J.Return);
+            for (int m = 0; m < methodCount; m++) {
+                if (!isCandidate(methods.get(m).getDeclaration())) {
+                    continue;
+                }
+                String reason;
+                if (scope.isInner() && !staticMembersInInnerClasses) {
+                    reason = "declared in an inner class before Java 16";
+                } else if (!eligible.get(m)) {
+                    reason = "serialization method";
+                } else {
+                    reason = blockedBy[m];
                 }
+                reasons.put(methods.get(m), reason);
             }
+        }
+        return reasons;
+    }
 
-            return !(isUnaryIncrementKind.test(parent) && parent.dropParentUntil(J.class::isInstance).getValue() instanceof J.Block);
+    /**
+     * @return What the method uses of the instance directly, or null if nothing.
+     */
+    @Nullable
+    private static String instanceUsage(UsageAnalysis.ClassUsage scope, UsageAnalysis.MethodUsage method) {
+        if (method.usesThis) {
+            return "uses this or an enclosing instance";
+        }
+        if (method.referencedWithReceiver) {
+            return "is named by a method reference with a receiver other than this";
         }
+        UsageAnalysis.IntList references = method.references;
+        for (int r = 0; references != null && r < references.size; r++) {
+            int member = references.values[r] >>> 2;
+            if (!scope.instanceVariables.get(member)) {
+                continue;
+            }
+            String key = scope.key(member);
+            if (key.startsWith("new ")) {
+                return "instantiates inner class " + key.substring("new ".length());
+            }
+            switch (references.values[r] & 3) {
+                case UsageAnalysis.WRITE:
+                    return "writes field " + key;
+                case UsageAnalysis.CALL:
+                    // a method that shares its name with a field, when references are matched by name
+                    return "calls " + key + ", named like a field";
+                default:
+                    return "reads field " + key;
+            }
+        }
+        return null;
+    }
 
-        /**
-         * An identifier is considered a right-hand side ("rhs") read operation if it is not used as the left operand
-         * of an assignment, nor as the operand of a stand-alone increment.
-         *
-         * @param j      The subtree to search.
-         * @param target A {@link J.Identifier} to check for usages.
-         * @return found {@link J} locations of "right-hand" read calls.
-         */
-        private static List<J> findRhsReferences(J j, J.Identifier target) {
-            final List<J> refs = new ArrayList<>();
-            new JavaIsoVisitor<List<J>>() {
-                @Override
-                public J.Identifier visitIdentifier(J.Identifier identifier, List<J> ctx) {
-                    if (identifier.getSimpleName().equals(target.getSimpleName()) && isRhsValue(getCursor())) {
-                        ctx.add(identifier);
-                    }
-                    return super.visitIdentifier(identifier, ctx);
+    private static String methodSignature(J.MethodDeclaration method) {
+        StringJoiner parameters = new StringJoiner(", ", method.getSimpleName() + "(", ")");
+        for (Statement parameter : method.getParameters()) {
+            if (parameter instanceof J.VariableDeclarations) {
+                J.VariableDeclarations declarations = (J.VariableDeclarations) parameter;
+                TypeTree type = declarations.getTypeExpression();
+                parameters.add((type == null ? "var" : type.toString().trim()) + (declarations.getVarargs() != null ? "..." : ""));
+            }
+        }
+        return parameters.toString();
+    }
+
+    private static String visibility(J.MethodDeclaration method) {
+        if (method.hasModifier(J.Modifier.Type.Public)) {
+            return "public";
+        } else if (method.hasModifier(J.Modifier.Type.Protected)) {
+            return "protected";
+        } else if (method.hasModifier(J.Modifier.Type.Private)) {
+            return "private";
+        }
+        return "package-private";
+    }
+
+    /**
+     * @return The positions of the methods of the class that could be made static, if they use no instance state.
+     */
+    private static BitSet eligibleMethods(UsageAnalysis.ClassUsage scope, TypeHierarchy hierarchy, boolean staticMembersInInnerClasses) {
+        BitSet eligible = new BitSet();
+        if (scope.isInner() && !staticMembersInInnerClasses) {
+            return eligible;
+        }
+        J.ClassDeclaration serializableDeclaration = scope.getDeclaration() != null &&
+                isSerializable(scope.getDeclaration(), hierarchy) ? scope.getDeclaration() : null;
+        List<UsageAnalysis.MethodUsage> methods = scope.methods;
+        for (int m = 0; m < methods.size(); m++) {
+            J.MethodDeclaration md = methods.get(m).getDeclaration();
+            boolean methodOverridesSerializableMethod = serializableDeclaration != null &&
+                    (SERIALIZABLE_WRITE_OBJECT.matches(md, serializableDeclaration)
+                            || SERIALIZABLE_READ_OBJECT.matches(md, serializableDeclaration)
+                            || SERIALIZABLE_READ_OBJECT_NO_DATA.matches(md, serializableDeclaration));
+            if (isCandidate(md) && !methodOverridesSerializableMethod) {
+                eligible.set(m);
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * @param methodsToMakeStatic The ordinals, in the order methods are visited, of the methods to make static.
+     * @return The class unchanged if no method needs a static modifier. Otherwise, a copy in which only the modified
+     * methods, and the trees that hold them, are new.
+     */
+    static J.ClassDeclaration addStaticModifiers(J.ClassDeclaration clazz, BitSet methodsToMakeStatic) {
+        if (methodsToMakeStatic.isEmpty()) {
+            return clazz;
+        }
+        return (J.ClassDeclaration) new JavaIsoVisitor<BitSet>() {
+            private int ordinal;
+
+            @Override
+            public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, BitSet methodsToMakeStatic) {
+                // ordinals are assigned before descending, exactly as the scanner assigns them
+                boolean makeStatic = methodsToMakeStatic.get(ordinal++);
+                J.MethodDeclaration m = super.visitMethodDeclaration(method, methodsToMakeStatic);
+                return makeStatic ? withStaticModifier(m) : m;
+            }
+        }.visit(clazz, methodsToMakeStatic);
+    }
+
+    static J.MethodDeclaration withStaticModifier(J.MethodDeclaration method) {
+        if (method.hasModifier(J.Modifier.Type.Static)) {
+            return method;
+        }
+        J.Modifier staticModifier = new J.Modifier(randomId(), Space.build(" ", emptyList()), Markers.EMPTY, J.Modifier.Type.Static, emptyList());
+        return method.withModifiers(ListUtils.concat(method.getModifiers(), staticModifier));
+    }
+
+    /**
+     * Placed after any access and {@code abstract} modifiers, and before {@code final}, in the customary order.
+     *
+     * @param modifiers At least one modifier, none of them static.
+     */
+    static List<J.Modifier> withStaticModifier(List<J.Modifier> modifiers) {
+        int position = 0;
+        for (int i = 0; i < modifiers.size(); i++) {
+            J.Modifier.Type type = modifiers.get(i).getType();
+            if (type == J.Modifier.Type.Public || type == J.Modifier.Type.Protected || type == J.Modifier.Type.Private ||
+                type == J.Modifier.Type.Abstract) {
+                position = i + 1;
+            }
+        }
+
+        J.Modifier staticModifier = new J.Modifier(randomId(), Space.build(" ", emptyList()), Markers.EMPTY, J.Modifier.Type.Static, emptyList());
+        if (position > 0) {
+            List<J.Modifier> newModifiers = new ArrayList<>(modifiers);
+            newModifiers.add(position, staticModifier);
+            return newModifiers;
+        }
+        // the first modifier gives up its prefix to the new one
+        return ListUtils.concat(staticModifier.withPrefix(modifiers.get(0).getPrefix()),
+                ListUtils.map(modifiers, (i, m) -> i == 0 ? m.withPrefix(Space.build(" ", emptyList())) : m));
+    }
+
+    /**
+     * @return true if any class in the tree, at any depth, declares a method that might be made static.
+     */
+    static boolean hasCandidateMethod(J tree) {
+        AtomicBoolean found = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public @Nullable J visit(@Nullable Tree tree, AtomicBoolean found) {
+                // stop descending once a candidate has been found
+                return found.get() ? (J) tree : super.visit(tree, found);
+            }
+
+            @Override
+            public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, AtomicBoolean found) {
+                if (isCandidate(method)) {
+                    found.set(true);
+                    return method;
                 }
-            }.visit(j, refs);
-            return refs;
+                return super.visitMethodDeclaration(method, found);
+            }
+        }.visit(tree, found);
+        return found.get();
+    }
+
+    /**
+     * Constructors and methods without a body (abstract or native) are never candidates.
+     */
+    private static boolean isCandidate(J.MethodDeclaration md) {
+        return isNonOverridable(md) && !md.hasModifier(J.Modifier.Type.Static) && !md.isConstructor() && md.getBody() != null;
+    }
+
+    private static boolean isInstanceMethod(J.MethodDeclaration md) {
+        return !md.hasModifier(J.Modifier.Type.Static) && !md.isConstructor();
+    }
+
+    private static boolean isNonOverridable(J.MethodDeclaration md) {
+        return md.hasModifier(J.Modifier.Type.Private) || md.hasModifier(J.Modifier.Type.Final);
+    }
+
+    /**
+     * Before Java 16, inner, local and anonymous classes cannot declare static methods.
+     */
+    static boolean allowsStaticMembersInInnerClasses(J.CompilationUnit cu) {
+        JavaVersion javaVersion = cu.getMarkers().findFirst(JavaVersion.class).orElse(null);
+        return javaVersion != null && javaVersion.getMajorVersion() >= 16;
+    }
+
+    /**
+     * Through any superclass or interface, when the class is type attributed. Otherwise, only when the class itself
+     * names {@code Serializable} in its implements clause.
+     */
+    static boolean isSerializable(J.ClassDeclaration clazz, TypeHierarchy hierarchy) {
+        if (hierarchy.isAssignableTo("java.io.Serializable", clazz.getType())) {
+            return true;
         }
+        if (clazz.getImplements() == null) {
+            return false;
+        }
+        for (TypeTree i : clazz.getImplements()) {
+            String name = i.toString().trim();
+            if (name.equals("Serializable") || name.equals("java.io.Serializable")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Timings and work counters, first of a single top-level class and then summed over a compilation unit. Counting
+     * is a handful of increments and clock reads per class, cheap enough to always be on.
+     */
+    static class RunStatistics {
+        private long cacheNanos;
+        private long referenceScanNanos;
+        private long propagationNanos;
+        private long modifierRewriteNanos;
+        private int classes;
+        private int methods;
+        private int instanceFields;
+        private long referenceScanVisits;
+        private long fixpointIterations;
+        private int cachedClasses;
+        private int methodsMadeStatic;
+        private int allocationSitesRemoved;
 
         /**
-         * @param j      The subtree to search.
-         * @param target A {@link J.Identifier} to check for usages.
-         * @return found {@link Statement} locations of "left-hand" assignment write calls.
+         * Deterministic, unlike the timings, so that the work budget gives the same outcome on every run.
          */
-        private static List<Statement> findLhsReferences(J j, J.Identifier target) {
-            JavaIsoVisitor<List<Statement>> visitor = new JavaIsoVisitor<List<Statement>>() {
-                @Override
-                public J.Assignment visitAssignment(J.Assignment assignment, List<Statement> ctx) {
-                    if (assignment.getVariable() instanceof J.Identifier) {
-                        J.Identifier i = (J.Identifier) assignment.getVariable();
-                        if (i.getSimpleName().equals(target.getSimpleName())) {
-                            ctx.add(assignment);
-                        }
-                    }
-                    return super.visitAssignment(assignment, ctx);
-                }
+        private long work() {
+            return referenceScanVisits + fixpointIterations;
+        }
 
-                @Override
-                public J.AssignmentOperation visitAssignmentOperation(J.AssignmentOperation assignOp, List<Statement> ctx) {
-                    if (assignOp.getVariable() instanceof J.Identifier) {
-                        J.Identifier i = (J.Identifier) assignOp.getVariable();
-                        if (i.getSimpleName().equals(target.getSimpleName())) {
-                            ctx.add(assignOp);
-                        }
-                    }
-                    return super.visitAssignmentOperation(assignOp, ctx);
-                }
+        private void add(UsageAnalysis analysis) {
+            classes += analysis.classes.size();
+            methods += analysis.methodCount;
+            for (UsageAnalysis.ClassUsage scope : analysis.classes) {
+                instanceFields += scope.instanceFieldCount;
+            }
+            referenceScanVisits += analysis.visits;
+        }
 
-                @Override
-                public J.Unary visitUnary(J.Unary unary, List<Statement> ctx) {
-                    if (unary.getExpression() instanceof J.Identifier) {
-                        J.Identifier i = (J.Identifier) unary.getExpression();
-                        if (i.getSimpleName().equals(target.getSimpleName())) {
-                            ctx.add(unary);
+        private void add(@Nullable RunStatistics other) {
+            if (other == null) {
+                return;
+            }
+            cacheNanos += other.cacheNanos;
+            referenceScanNanos += other.referenceScanNanos;
+            propagationNanos += other.propagationNanos;
+            modifierRewriteNanos += other.modifierRewriteNanos;
+            classes += other.classes;
+            methods += other.methods;
+            instanceFields += other.instanceFields;
+            referenceScanVisits += other.referenceScanVisits;
+            fixpointIterations += other.fixpointIterations;
+            cachedClasses += other.cachedClasses;
+            methodsMadeStatic += other.methodsMadeStatic;
+            allocationSitesRemoved += other.allocationSitesRemoved;
+        }
+
+        private FalseInstanceMethodStatistics.Row toRow(String sourcePath) {
+            return new FalseInstanceMethodStatistics.Row(sourcePath, cacheNanos, referenceScanNanos, propagationNanos,
+                    modifierRewriteNanos, classes, methods, instanceFields, referenceScanVisits, fixpointIterations,
+                    cachedClasses, methodsMadeStatic, allocationSitesRemoved);
+        }
+    }
+
+    /**
+     * Call edges between the methods of a single class scope, addressed by each method's position in the scope.
+     * Overloads share a member ID, so a call is an edge to every overload.
+     */
+    static class CallGraph {
+        /**
+         * @return For each method, the methods that call it, or null if none does.
+         */
+        static UsageAnalysis.IntList[] callers(UsageAnalysis.ClassUsage scope) {
+            List<UsageAnalysis.MethodUsage> methods = scope.methods;
+            UsageAnalysis.IntList[] callers = new UsageAnalysis.IntList[methods.size()];
+            for (UsageAnalysis.MethodUsage caller : methods) {
+                UsageAnalysis.IntList references = caller.references;
+                for (int r = 0; references != null && r < references.size; r++) {
+                    // reads and writes count too, so that a name shared by a field and a method stays conservative
+                    UsageAnalysis.IntList callees = scope.methodsOf(references.values[r] >>> 2);
+                    for (int c = 0; callees != null && c < callees.size; c++) {
+                        int callee = callees.values[c];
+                        if (callers[callee] == null) {
+                            callers[callee] = new UsageAnalysis.IntList(2);
                         }
+                        callers[callee].add(caller.index);
                     }
-                    return super.visitUnary(unary, ctx);
                 }
-            };
-
-            List<Statement> refs = new ArrayList<>();
-            visitor.visit(j, refs);
-            return refs;
+            }
+            return callers;
         }
     }
 
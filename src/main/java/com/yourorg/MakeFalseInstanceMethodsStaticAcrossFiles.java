@@ -0,0 +1,285 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import lombok.With;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Option;
+import org.openrewrite.Recipe;
+import org.openrewrite.SourceFile;
+import org.openrewrite.internal.ListUtils;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.MethodMatcher;
+import org.openrewrite.java.tree.*;
+
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Makes non-private final methods that use no instance state static across a whole repository, and rewrites every
+ * call through an instance, {@code obj.method()}, to a call through the type, {@code Type.method()}.
+ * <p>
+ * Both phases run over all source files at once: a scan, in parallel, into a {@link CrossFileIndex}, then the edits.
+ */
+@Value
+@EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor(onConstructor_ = {@JsonCreator})
+public class MakeFalseInstanceMethodsStaticAcrossFiles extends Recipe {
+
+    private static final MethodMatcher GET_METHOD = new MethodMatcher("java.lang.Class getMethod(String, ..)");
+    private static final MethodMatcher GET_DECLARED_METHOD = new MethodMatcher("java.lang.Class getDeclaredMethod(String, ..)");
+
+    @Option(displayName = "Memory-mapped index directory",
+            description = "A local directory in which to keep the project-wide index of methods and their callers in " +
+                    "memory-mapped temporary files, rather than on the heap. Heap use then stays flat however large the " +
+                    "repository. The files are deleted when the run completes.",
+            required = false,
+            example = "/tmp")
+    @Nullable
+    @With
+    String memoryMappedIndexDirectory;
+
+    public MakeFalseInstanceMethodsStaticAcrossFiles() {
+        this(null);
+    }
+
+    @Override
+    public String getDisplayName() {
+        return "Make false instance methods static across files";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Change non-private final methods to static if they access no instance data, and call them through their type " +
+               "rather than an instance in every file. Methods used through a bound method reference, or looked up by name " +
+               "through reflection, are left alone. Requires type attribution. A call whose receiver is a variable or field no " +
+               "longer dereferences it, and so no longer fails when it is null.";
+    }
+
+    @Override
+    protected List<SourceFile> visit(List<SourceFile> before, ExecutionContext ctx) {
+        try (CrossFileIndex index = new CrossFileIndex(memoryMappedIndexDirectory == null ?
+                SymbolTable.onHeap() :
+                SymbolTable.memoryMapped(Paths.get(memoryMappedIndexDirectory)))) {
+            before.parallelStream()
+                    .filter(J.CompilationUnit.class::isInstance)
+                    .forEach(sourceFile -> new Scanner(index).visit(sourceFile, ctx));
+            index.completeScan();
+
+            return ListUtils.map(before, sourceFile -> sourceFile instanceof J.CompilationUnit && index.isAffected(sourceFile.getSourcePath()) ?
+                    (SourceFile) new Editor(index).visit(sourceFile, ctx) :
+                    sourceFile);
+        }
+    }
+
+    /**
+     * Records the candidates a compilation unit declares, the methods it calls, and the uses it makes of them that a
+     * static method can't satisfy.
+     */
+    private static class Scanner extends JavaIsoVisitor<ExecutionContext> {
+        private final CrossFileIndex index;
+
+        @Nullable
+        private CrossFileIndex.Batch batch;
+
+        private Scanner(CrossFileIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext ctx) {
+            CrossFileIndex.Batch batch = new CrossFileIndex.Batch(cu.getSourcePath());
+            this.batch = batch;
+            boolean staticMembersInInnerClasses = MakeFalseInstanceMethodsStatic.allowsStaticMembersInInnerClasses(cu);
+            for (J.ClassDeclaration clazz : cu.getClasses()) {
+                if (MakeFalseInstanceMethodsStatic.hasCandidateMethod(clazz)) {
+                    // not memoized, which would hold every class of the repository until the run ends
+                    addCandidates(UsageAnalysis.analyze(clazz, true), TypeHierarchy.of(ctx), staticMembersInInnerClasses, batch);
+                }
+            }
+            J.CompilationUnit c = super.visitCompilationUnit(cu, ctx);
+            index.add(batch);
+            return c;
+        }
+
+        /**
+         * Only non-private final methods are made static here, so a method that calls one this recipe leaves an
+         * instance method, such as a private method that uses no instance state either, must stay one too. Calls
+         * between candidates are recorded, so that a candidate later blocked by another file keeps its callers.
+         */
+        private static void addCandidates(UsageAnalysis analysis, TypeHierarchy hierarchy, boolean staticMembersInInnerClasses,
+                                          CrossFileIndex.Batch batch) {
+            BitSet methodsToMakeStatic = MakeFalseInstanceMethodsStatic.propagateInstanceUsage(analysis, hierarchy, staticMembersInInnerClasses, null);
+            for (UsageAnalysis.ClassUsage scope : analysis.getClasses()) {
+                List<UsageAnalysis.MethodUsage> methods = scope.getMethods();
+                BitSet candidates = new BitSet(methods.size());
+                for (int m = 0; m < methods.size(); m++) {
+                    UsageAnalysis.MethodUsage method = methods.get(m);
+                    J.MethodDeclaration md = method.getDeclaration();
+                    if (method.ordinal >= 0 && methodsToMakeStatic.get(method.ordinal) &&
+                        md.hasModifier(J.Modifier.Type.Final) && !md.hasModifier(J.Modifier.Type.Private) &&
+                        md.getMethodType() != null && !overridesOrImplements(md, hierarchy)) {
+                        candidates.set(m);
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+
+                UsageAnalysis.IntList[] callers = MakeFalseInstanceMethodsStatic.CallGraph.callers(scope);
+                int[] worklist = new int[methods.size()];
+                int worklistSize = 0;
+                for (int m = 0; m < methods.size(); m++) {
+                    J.MethodDeclaration md = methods.get(m).getDeclaration();
+                    if (!candidates.get(m) && !md.hasModifier(J.Modifier.Type.Static) && !md.isConstructor()) {
+                        worklist[worklistSize++] = m;
+                    }
+                }
+                while (worklistSize > 0) {
+                    UsageAnalysis.IntList callersOfMethod = callers[worklist[--worklistSize]];
+                    for (int c = 0; callersOfMethod != null && c < callersOfMethod.size; c++) {
+                        int caller = callersOfMethod.values[c];
+                        if (candidates.get(caller)) {
+                            candidates.clear(caller);
+                            worklist[worklistSize++] = caller;
+                        }
+                    }
+                }
+
+                for (int m = candidates.nextSetBit(0); m >= 0; m = candidates.nextSetBit(m + 1)) {
+                    JavaType.Method candidate = methods.get(m).getDeclaration().getMethodType();
+                    assert candidate != null;
+                    batch.addCandidate(candidate);
+                    UsageAnalysis.IntList callersOfMethod = callers[m];
+                    for (int c = 0; callersOfMethod != null && c < callersOfMethod.size; c++) {
+                        JavaType.Method caller = methods.get(callersOfMethod.values[c]).getDeclaration().getMethodType();
+                        if (candidates.get(callersOfMethod.values[c]) && caller != null) {
+                            batch.addCandidateCaller(candidate, caller);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, ExecutionContext ctx) {
+            JavaType.Method methodType = method.getMethodType();
+            if (methodType != null && methodType.hasFlags(Flag.Final) && !methodType.hasFlags(Flag.Static)) {
+                requireNonNull(batch).addCallSite(methodType);
+            }
+            if ((GET_METHOD.matches(method) || GET_DECLARED_METHOD.matches(method)) &&
+                method.getArguments().get(0) instanceof J.Literal) {
+                Object name = ((J.Literal) method.getArguments().get(0)).getValue();
+                if (name instanceof String) {
+                    requireNonNull(batch).blockReflectivelyNamed((String) name);
+                }
+            }
+            return super.visitMethodInvocation(method, ctx);
+        }
+
+        @Override
+        public J.MemberReference visitMemberReference(J.MemberReference memberRef, ExecutionContext ctx) {
+            // obj::method and Type::method both fix the receiver as part of the functional shape
+            if (memberRef.getMethodType() != null) {
+                requireNonNull(batch).block(memberRef.getMethodType());
+            }
+            return super.visitMemberReference(memberRef, ctx);
+        }
+    }
+
+    /**
+     * A final method can still implement an interface method, and so must keep its receiver.
+     */
+    private static boolean overridesOrImplements(J.MethodDeclaration md, TypeHierarchy hierarchy) {
+        for (J.Annotation annotation : md.getLeadingAnnotations()) {
+            if ("Override".equals(annotation.getSimpleName())) {
+                return true;
+            }
+        }
+        JavaType.Method methodType = md.getMethodType();
+        return methodType != null && hierarchy.isDeclaredInSupertype(methodType);
+    }
+
+    /**
+     * Adds the static modifier to the candidates a file declares, and calls each candidate through its type wherever
+     * the receiver can be dropped without losing a side effect.
+     */
+    private static class Editor extends JavaIsoVisitor<ExecutionContext> {
+        private final CrossFileIndex index;
+
+        private Editor(CrossFileIndex index) {
+            this.index = index;
+        }
+
+        @Override
+        public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, ExecutionContext ctx) {
+            J.MethodDeclaration m = super.visitMethodDeclaration(method, ctx);
+            return index.isMadeStatic(m.getMethodType()) && !m.hasModifier(J.Modifier.Type.Static) ?
+                    m.withModifiers(MakeFalseInstanceMethodsStatic.withStaticModifier(m.getModifiers())) :
+                    m;
+        }
+
+        @Override
+        public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, ExecutionContext ctx) {
+            J.MethodInvocation m = super.visitMethodInvocation(method, ctx);
+            Expression select = m.getSelect();
+            JavaType.Method methodType = m.getMethodType();
+            if (select == null || isThis(select) || !index.isMadeStatic(methodType) || !isSideEffectFreeInstance(select)) {
+                return m;
+            }
+            assert methodType != null;
+            return m.withSelect(typeReference(methodType.getDeclaringType()).withPrefix(select.getPrefix()));
+        }
+
+        /**
+         * Calls through {@code this} are left as they are.
+         */
+        private static boolean isThis(Expression select) {
+            return select instanceof J.Identifier && "this".equals(((J.Identifier) select).getSimpleName());
+        }
+
+        /**
+         * A variable, or a chain of field accesses on a variable or {@code this}.
+         */
+        private static boolean isSideEffectFreeInstance(Expression select) {
+            if (select instanceof J.Identifier) {
+                return ((J.Identifier) select).getFieldType() != null || isThis(select);
+            }
+            if (select instanceof J.FieldAccess) {
+                J.FieldAccess fieldAccess = (J.FieldAccess) select;
+                return fieldAccess.getName().getFieldType() != null && isSideEffectFreeInstance(fieldAccess.getTarget());
+            }
+            return false;
+        }
+
+        private Expression typeReference(JavaType.FullyQualified type) {
+            if (type.getOwningClass() == null) {
+                maybeAddImport(type.getFullyQualifiedName());
+                return TypeTree.build(type.getClassName());
+            }
+            // nested types are referenced by their fully qualified name, so that no import is needed
+            return TypeTree.build(type.getFullyQualifiedName().replace('$', '.'));
+        }
+    }
+}
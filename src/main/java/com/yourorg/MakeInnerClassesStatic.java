@@ -0,0 +1,421 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import lombok.EqualsAndHashCode;
+import lombok.Value;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Recipe;
+import org.openrewrite.Tree;
+import org.openrewrite.TreeVisitor;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.JavaVisitor;
+import org.openrewrite.java.tree.*;
+import org.openrewrite.marker.Markers;
+import org.openrewrite.marker.SearchResult;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Collections.emptyList;
+import static org.openrewrite.Tree.randomId;
+
+/**
+ * The companion of {@link MakeFalseInstanceMethodsStatic} for classes: an inner class that never uses its enclosing
+ * instance still holds a reference to it, which costs space in every instance and keeps the enclosing instance
+ * reachable for as long as the inner one is.
+ * <p>
+ * Only classes that are private, or nested in a private class, are changed, so that every instantiation and subclass
+ * that depends on the enclosing instance is in the same compilation unit and can be checked.
+ */
+@Value
+@EqualsAndHashCode(callSuper = true)
+public class MakeInnerClassesStatic extends Recipe {
+
+    @Override
+    public String getDisplayName() {
+        return "Make inner classes static";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Change private inner classes to static nested classes if no code in them uses the enclosing instance. " +
+               "Classes that are serializable, that are instantiated or subclassed through an explicit enclosing instance, " +
+               "that extend an inner class, or that use a type parameter of an enclosing class are left alone.";
+    }
+
+    @Override
+    protected TreeVisitor<?, ExecutionContext> getSingleSourceApplicableTest() {
+        return new HasPrivateInnerClass();
+    }
+
+    @Override
+    public JavaVisitor<ExecutionContext> getVisitor() {
+        return new MakeInnerClassesStaticVisitor();
+    }
+
+    /**
+     * Finds files with at least one private class, at any nesting level, which is the least a candidate needs.
+     */
+    private static class HasPrivateInnerClass extends JavaIsoVisitor<ExecutionContext> {
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext ctx) {
+            AtomicBoolean found = new AtomicBoolean();
+            new JavaIsoVisitor<AtomicBoolean>() {
+                @Override
+                public @Nullable J visit(@Nullable Tree tree, AtomicBoolean found) {
+                    return found.get() ? (J) tree : super.visit(tree, found);
+                }
+
+                @Override
+                public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, AtomicBoolean found) {
+                    if (classDecl.hasModifier(J.Modifier.Type.Private)) {
+                        found.set(true);
+                        return classDecl;
+                    }
+                    return super.visitClassDeclaration(classDecl, found);
+                }
+            }.visit(cu, found);
+            return found.get() ? SearchResult.found(cu) : cu;
+        }
+    }
+
+    private static class MakeInnerClassesStaticVisitor extends JavaIsoVisitor<ExecutionContext> {
+        @Override
+        public J.CompilationUnit visitCompilationUnit(J.CompilationUnit cu, ExecutionContext ctx) {
+            boolean staticMembersInInnerClasses = MakeFalseInstanceMethodsStatic.allowsStaticMembersInInnerClasses(cu);
+            InstanceDependencies dependencies = null;
+            Set<J.ClassDeclaration> classesToMakeStatic = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (J.ClassDeclaration clazz : cu.getClasses()) {
+                UsageAnalysis analysis = UsageAnalysis.of(clazz, false, ctx);
+                if (!hasPrivateInnerClass(analysis)) {
+                    continue;
+                }
+                if (dependencies == null) {
+                    dependencies = InstanceDependencies.of(cu);
+                }
+                classesToMakeStatic.addAll(innerClassesToMakeStatic(analysis, dependencies, TypeHierarchy.of(ctx), staticMembersInInnerClasses));
+            }
+            if (classesToMakeStatic.isEmpty()) {
+                return cu;
+            }
+            return (J.CompilationUnit) new JavaIsoVisitor<Set<J.ClassDeclaration>>() {
+                @Override
+                public J.ClassDeclaration visitClassDeclaration(J.ClassDeclaration classDecl, Set<J.ClassDeclaration> classesToMakeStatic) {
+                    J.ClassDeclaration c = super.visitClassDeclaration(classDecl, classesToMakeStatic);
+                    return classesToMakeStatic.contains(classDecl) ? withStaticModifier(c) : c;
+                }
+            }.visit(cu, classesToMakeStatic);
+        }
+    }
+
+    private static boolean hasPrivateInnerClass(UsageAnalysis analysis) {
+        for (UsageAnalysis.ClassUsage scope : analysis.getClasses()) {
+            if (isMemberClass(scope) && scope.hasOuterInstance() && isEffectivelyPrivate(scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Classes are considered outermost first, and again until none is added, because both whether a class is nested
+     * in an inner class and whether it extends one can change as other classes are made static.
+     */
+    static Set<J.ClassDeclaration> innerClassesToMakeStatic(UsageAnalysis analysis, InstanceDependencies dependencies,
+                                                            TypeHierarchy hierarchy, boolean staticMembersInInnerClasses) {
+        Set<UsageAnalysis.ClassUsage> madeStatic = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean changed;
+        do {
+            changed = false;
+            for (UsageAnalysis.ClassUsage scope : analysis.getClasses()) {
+                if (!madeStatic.contains(scope) && canBeMadeStatic(scope, analysis, dependencies, hierarchy, madeStatic, staticMembersInInnerClasses)) {
+                    madeStatic.add(scope);
+                    changed = true;
+                }
+            }
+        } while (changed);
+
+        Set<J.ClassDeclaration> classesToMakeStatic = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (UsageAnalysis.ClassUsage scope : madeStatic) {
+            classesToMakeStatic.add(scope.getDeclaration());
+        }
+        return classesToMakeStatic;
+    }
+
+    private static boolean canBeMadeStatic(UsageAnalysis.ClassUsage scope, UsageAnalysis analysis, InstanceDependencies dependencies,
+                                           TypeHierarchy hierarchy,
+                                           Set<UsageAnalysis.ClassUsage> madeStatic, boolean staticMembersInInnerClasses) {
+        J.ClassDeclaration declaration = scope.getDeclaration();
+        if (declaration == null || !isMemberClass(scope) || !scope.hasOuterInstance() || scope.usesOuterInstance() ||
+            !isEffectivelyPrivate(scope)) {
+            return false;
+        }
+        assert scope.enclosing != null;
+        // before Java 16, a static class can't be declared in an inner, local or anonymous class
+        if (scope.enclosing.isInner() && !madeStatic.contains(scope.enclosing) && !staticMembersInInnerClasses) {
+            return false;
+        }
+        // the serialized form of an inner class includes its enclosing instance
+        if (MakeFalseInstanceMethodsStatic.isSerializable(declaration, hierarchy)) {
+            return false;
+        }
+        // outer.new Inner() and outer.super() have no equivalent for a static class
+        String name = declaration.getSimpleName();
+        if (dependencies.qualifiedInstantiations.contains(name) || dependencies.qualifiedSuperclassConstructorCalls.contains(name)) {
+            return false;
+        }
+        return !extendsInnerClass(declaration, analysis, madeStatic) &&
+               !usesEnclosingTypeParameters(scope, declaration) &&
+               !usesInheritedOuterMembers(scope, analysis);
+    }
+
+    private static boolean isMemberClass(UsageAnalysis.ClassUsage scope) {
+        J.ClassDeclaration declaration = scope.getDeclaration();
+        if (declaration == null || scope.enclosing == null) {
+            return false;
+        }
+        for (Statement statement : scope.enclosing.body.getStatements()) {
+            if (statement == declaration) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visible only within its top-level class, and so only within this compilation unit.
+     */
+    private static boolean isEffectivelyPrivate(UsageAnalysis.ClassUsage scope) {
+        for (UsageAnalysis.ClassUsage s = scope; s != null; s = s.enclosing) {
+            if (s.getDeclaration() != null && s.getDeclaration().hasModifier(J.Modifier.Type.Private)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The constructor of a class that extends an inner class implicitly passes the enclosing instance on to it.
+     */
+    private static boolean extendsInnerClass(J.ClassDeclaration declaration, UsageAnalysis analysis,
+                                             Set<UsageAnalysis.ClassUsage> madeStatic) {
+        if (declaration.getExtends() == null) {
+            return false;
+        }
+        String superclassName = simpleName(declaration.getExtends());
+        for (UsageAnalysis.ClassUsage scope : analysis.getClasses()) {
+            if (superclassName.equals(scope.name) && scope.hasOuterInstance() && !madeStatic.contains(scope)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean usesEnclosingTypeParameters(UsageAnalysis.ClassUsage scope, J.ClassDeclaration declaration) {
+        return mentionsAny(declaration, typeParametersInScope(scope.enclosing));
+    }
+
+    /**
+     * @return The names of the type parameters of the class and the classes enclosing it, and of the methods that
+     * local and anonymous classes among them are declared in.
+     */
+    static Set<String> typeParametersInScope(@Nullable UsageAnalysis.ClassUsage scope) {
+        Set<String> typeParameters = new HashSet<>();
+        for (UsageAnalysis.ClassUsage s = scope; s != null; s = s.enclosing) {
+            if (s.getDeclaration() != null) {
+                addTypeParameters(s.getDeclaration().getTypeParameters(), typeParameters);
+            }
+            if (s.enclosingMethod != null) {
+                addTypeParameters(s.enclosingMethod.getDeclaration().getTypeParameters(), typeParameters);
+            }
+        }
+        return typeParameters;
+    }
+
+    /**
+     * Conservatively, any identifier by one of the names counts, even one that is shadowed.
+     */
+    static boolean mentionsAny(J tree, Set<String> names) {
+        if (names.isEmpty()) {
+            return false;
+        }
+        AtomicBoolean found = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public J.Identifier visitIdentifier(J.Identifier identifier, AtomicBoolean found) {
+                if (names.contains(identifier.getSimpleName())) {
+                    found.set(true);
+                }
+                return identifier;
+            }
+        }.visit(tree, found);
+        return found.get();
+    }
+
+    private static void addTypeParameters(@Nullable List<J.TypeParameter> typeParameters, Set<String> names) {
+        if (typeParameters != null) {
+            for (J.TypeParameter typeParameter : typeParameters) {
+                if (typeParameter.getName() instanceof J.Identifier) {
+                    names.add(((J.Identifier) typeParameter.getName()).getSimpleName());
+                }
+            }
+        }
+    }
+
+    /**
+     * The analysis only knows the members declared in the classes it analyzes. An unqualified call to an instance
+     * method, or read of an instance field, that an enclosing class inherits needs the enclosing instance too.
+     * Without type attribution, any call to a method not declared in the class or a class nested in it counts.
+     */
+    private static boolean usesInheritedOuterMembers(UsageAnalysis.ClassUsage scope, UsageAnalysis analysis) {
+        Deque<JavaType> ownTypes = new ArrayDeque<>();
+        Set<String> ownMethodNames = new HashSet<>();
+        for (UsageAnalysis.ClassUsage s : analysis.getClasses()) {
+            if (isNestedIn(s, scope)) {
+                if (s.getDeclaration() != null && s.getDeclaration().getType() != null) {
+                    ownTypes.push(s.getDeclaration().getType());
+                }
+                for (UsageAnalysis.MethodUsage method : s.getMethods()) {
+                    ownMethodNames.add(method.getDeclaration().getSimpleName());
+                }
+            }
+        }
+
+        AtomicBoolean found = new AtomicBoolean();
+        new JavaIsoVisitor<AtomicBoolean>() {
+            @Override
+            public J.NewClass visitNewClass(J.NewClass newClass, AtomicBoolean found) {
+                if (newClass.getBody() == null || newClass.getType() == null) {
+                    return super.visitNewClass(newClass, found);
+                }
+                // within its body, an anonymous class also inherits from the type it instantiates
+                ownTypes.push(newClass.getType());
+                try {
+                    return super.visitNewClass(newClass, found);
+                } finally {
+                    ownTypes.pop();
+                }
+            }
+
+            @Override
+            public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, AtomicBoolean found) {
+                if (method.getSelect() == null && !"super".equals(method.getSimpleName()) && !"this".equals(method.getSimpleName())) {
+                    JavaType.Method methodType = method.getMethodType();
+                    if (methodType == null ?
+                            !ownMethodNames.contains(method.getSimpleName()) :
+                            !methodType.hasFlags(Flag.Static) && !isOwn(methodType.getDeclaringType())) {
+                        found.set(true);
+                    }
+                }
+                return super.visitMethodInvocation(method, found);
+            }
+
+            @Override
+            public J.Identifier visitIdentifier(J.Identifier identifier, AtomicBoolean found) {
+                JavaType.Variable fieldType = identifier.getFieldType();
+                if (fieldType != null && fieldType.getOwner() instanceof JavaType.FullyQualified &&
+                    !fieldType.hasFlags(Flag.Static) && !isOwn(fieldType.getOwner())) {
+                    J parent = getCursor().dropParentUntil(J.class::isInstance).getValue();
+                    if (!(parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier)) {
+                        found.set(true);
+                    }
+                }
+                return identifier;
+            }
+
+            private boolean isOwn(JavaType type) {
+                for (JavaType ownType : ownTypes) {
+                    if (TypeUtils.isAssignableTo(type, ownType)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }.visit(scope.getDeclaration(), found);
+        return found.get();
+    }
+
+    private static boolean isNestedIn(UsageAnalysis.ClassUsage scope, UsageAnalysis.ClassUsage ancestor) {
+        for (UsageAnalysis.ClassUsage s = scope; s != null; s = s.enclosing) {
+            if (s == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String simpleName(TypeTree typeTree) {
+        J tree = typeTree;
+        if (tree instanceof J.ParameterizedType) {
+            tree = ((J.ParameterizedType) tree).getClazz();
+        }
+        if (tree instanceof J.FieldAccess) {
+            return ((J.FieldAccess) tree).getSimpleName();
+        }
+        return tree instanceof J.Identifier ? ((J.Identifier) tree).getSimpleName() : tree.toString();
+    }
+
+    static J.ClassDeclaration withStaticModifier(J.ClassDeclaration clazz) {
+        if (clazz.hasModifier(J.Modifier.Type.Static)) {
+            return clazz;
+        }
+        if (!clazz.getModifiers().isEmpty()) {
+            return clazz.withModifiers(MakeFalseInstanceMethodsStatic.withStaticModifier(clazz.getModifiers()));
+        }
+        // the class keyword gives up its prefix to the new modifier
+        J.ClassDeclaration.Kind kind = clazz.getAnnotations().getKind();
+        J.Modifier staticModifier = new J.Modifier(randomId(), kind.getPrefix(), Markers.EMPTY, J.Modifier.Type.Static, emptyList());
+        return clazz.getAnnotations().withKind(kind.withPrefix(Space.build(" ", emptyList())))
+                .withModifiers(Collections.singletonList(staticModifier));
+    }
+
+    /**
+     * The simple names of the classes in a compilation unit that are instantiated through an explicit enclosing
+     * instance, {@code outer.new Inner()}, or whose subclasses call their constructor through one,
+     * {@code outer.super()}.
+     */
+    static class InstanceDependencies {
+        final Set<String> qualifiedInstantiations = new HashSet<>();
+        final Set<String> qualifiedSuperclassConstructorCalls = new HashSet<>();
+
+        static InstanceDependencies of(J.CompilationUnit cu) {
+            InstanceDependencies dependencies = new InstanceDependencies();
+            new JavaIsoVisitor<InstanceDependencies>() {
+                @Override
+                public J.NewClass visitNewClass(J.NewClass newClass, InstanceDependencies dependencies) {
+                    if (newClass.getEnclosing() != null && newClass.getClazz() != null) {
+                        dependencies.qualifiedInstantiations.add(simpleName(newClass.getClazz()));
+                    }
+                    return super.visitNewClass(newClass, dependencies);
+                }
+
+                @Override
+                public J.MethodInvocation visitMethodInvocation(J.MethodInvocation method, InstanceDependencies dependencies) {
+                    if ("super".equals(method.getSimpleName()) && method.getSelect() != null) {
+                        J.ClassDeclaration subclass = getCursor().firstEnclosing(J.ClassDeclaration.class);
+                        if (subclass != null && subclass.getExtends() != null) {
+                            dependencies.qualifiedSuperclassConstructorCalls.add(simpleName(subclass.getExtends()));
+                        }
+                    }
+                    return super.visitMethodInvocation(method, dependencies);
+                }
+            }.visit(cu, dependencies);
+            return dependencies;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.internal.lang.Nullable;
+
+/**
+ * Java Flight Recorder events for the phases of the analysis: member collection, reference scanning, fixpoint
+ * propagation and rewriting, each with the source path, the class and a count of the elements the phase worked on.
+ * <p>
+ * The events are disabled by default, and are enabled by name in a recording's settings, for example
+ * {@code com.yourorg.ReferenceScan#enabled=true}. Flight Recorder needs Java 11, so the events are compiled apart from
+ * this Java 8 source set and loaded if they can be. Without them, and while no recording enables an event, a phase
+ * costs a call and a null check.
+ * <pre>
+ * Object event = PhaseEvents.begin(PhaseEvents.REFERENCE_SCAN);
+ * // the phase
+ * PhaseEvents.commit(event, sourcePath, className, elements);
+ * </pre>
+ */
+abstract class PhaseEvents {
+    static final int MEMBER_COLLECTION = 0;
+    static final int REFERENCE_SCAN = 1;
+    static final int PROPAGATION = 2;
+    static final int REWRITE = 3;
+
+    @Nullable
+    private static final PhaseEvents EVENTS = load();
+
+    /**
+     * @return A started event, or null if the phase is not being recorded.
+     */
+    @Nullable
+    static Object begin(int phase) {
+        return EVENTS == null ? null : EVENTS.start(phase);
+    }
+
+    /**
+     * @param event    What {@link #begin(int)} returned.
+     * @param elements Members collected, tree elements visited, propagation steps or methods made static.
+     */
+    static void commit(@Nullable Object event, @Nullable String sourcePath, String className, long elements) {
+        if (event != null) {
+            EVENTS.end(event, sourcePath == null ? "" : sourcePath, className, elements);
+        }
+    }
+
+    @Nullable
+    abstract Object start(int phase);
+
+    abstract void end(Object event, String sourcePath, String className, long elements);
+
+    @Nullable
+    private static PhaseEvents load() {
+        try {
+            return (PhaseEvents) Class.forName("com.yourorg.FlightRecorderPhaseEvents").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // not packaged, or a runtime without Flight Recorder
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class SkippedSourceFiles extends DataTable<SkippedSourceFiles.Row> {
+
+    public SkippedSourceFiles(Recipe recipe) {
+        super(recipe,
+                "Skipped source files",
+                "Compilation units left unchanged because analyzing them took more than the work budget.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The path of the compilation unit.")
+        String sourcePath;
+
+        @Column(displayName = "Classes",
+                description = "The number of top-level classes in the compilation unit.")
+        int classes;
+
+        @Column(displayName = "Members",
+                description = "The number of statements directly in the bodies of its top-level classes, that is of fields, " +
+                        "methods, initializers and nested classes.")
+        int members;
+
+        @Column(displayName = "Work budget",
+                description = "The work budget the compilation unit exceeded, in tree elements visited and propagation steps.")
+        long workBudget;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import lombok.Value;
+import org.openrewrite.Column;
+import org.openrewrite.DataTable;
+import org.openrewrite.Recipe;
+
+public class StaticMethodCandidates extends DataTable<StaticMethodCandidates.Row> {
+
+    public StaticMethodCandidates(Recipe recipe) {
+        super(recipe,
+                "Static method candidates",
+                "Private and final instance methods, and whether each could be made static or what blocks it.");
+    }
+
+    @Value
+    public static class Row {
+        @Column(displayName = "Source path",
+                description = "The path of the compilation unit.")
+        String sourcePath;
+
+        @Column(displayName = "Class",
+                description = "The fully qualified name of the declaring class when type attributed, otherwise its " +
+                        "name within the compilation unit. Anonymous classes are shown as `<anonymous>`.")
+        String className;
+
+        @Column(displayName = "Method signature",
+                description = "The method name and parameter types.")
+        String methodSignature;
+
+        @Column(displayName = "Visibility",
+                description = "One of `public`, `protected`, `package-private` or `private`.")
+        String visibility;
+
+        @Column(displayName = "Blocked by",
+                description = "Empty if the method could be made static. Otherwise the first reason found that it must " +
+                        "stay an instance method, such as the instance field it reads or the instance method it calls.")
+        String blockedBy;
+    }
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * Interned string keys, each with a fixed-width record and a list of referencing IDs, all held in flat buffers.
+ * <p>
+ * The buffers are either on the heap or memory-mapped temporary files. Mapped, the heap holds only the buffer objects
+ * themselves however many keys there are, and the operating system pages the data in and out as needed. A table is
+ * not thread-safe: one shared by several threads must be guarded by its owner, as {@link CrossFileIndex} does.
+ */
+final class SymbolTable implements Closeable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The most bytes a region can hold, the largest array or mapping a {@link ByteBuffer} supports.
+     */
+    private static final int MAX_REGION_CAPACITY = Integer.MAX_VALUE - 8;
+
+    /**
+     * Per key: the offset of the key in {@link #strings}, flags, an associated ID, and the head of its reference list.
+     */
+    private static final int RECORD_WIDTH = 16;
+
+    /**
+     * Per reference: the referencing ID and the offset of the next node, or -1.
+     */
+    private static final int NODE_WIDTH = 8;
+
+    private final RegionFactory regions;
+
+    private final Region strings;
+    private final Region records;
+    private final Region nodes;
+
+    /**
+     * Open addressing, holding record index plus one, so that zero is an empty slot.
+     */
+    private Region slots;
+    private int slotCount;
+
+    private int stringsEnd;
+    private int nodesEnd;
+    private int size;
+
+    private SymbolTable(RegionFactory regions) {
+        this.regions = regions;
+        strings = regions.create(INITIAL_CAPACITY * 32);
+        records = regions.create(INITIAL_CAPACITY * RECORD_WIDTH);
+        nodes = regions.create(INITIAL_CAPACITY * NODE_WIDTH);
+        slotCount = INITIAL_CAPACITY * 2;
+        slots = regions.create(slotCount * 4);
+    }
+
+    static SymbolTable onHeap() {
+        return new SymbolTable(HeapRegion::new);
+    }
+
+    /**
+     * @param directory Where to create the temporary files, which are deleted on {@link #close()}.
+     */
+    static SymbolTable memoryMapped(Path directory) {
+        return new SymbolTable(capacity -> new MappedRegion(directory, capacity));
+    }
+
+    /**
+     * @return The ID of the key, added with empty flags if it was not already present.
+     */
+    int intern(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int slot = findSlot(bytes, hash(bytes));
+        int existing = slots.buffer.getInt(slot * 4);
+        if (existing != 0) {
+            return existing - 1;
+        }
+
+        int id = size++;
+        strings.ensureCapacity((long) stringsEnd + 4 + bytes.length);
+        strings.buffer.putInt(stringsEnd, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            strings.buffer.put(stringsEnd + 4 + i, bytes[i]);
+        }
+
+        records.ensureCapacity((long) size * RECORD_WIDTH);
+        int record = id * RECORD_WIDTH;
+        records.buffer.putInt(record, stringsEnd);
+        records.buffer.putInt(record + 4, 0);
+        records.buffer.putInt(record + 8, -1);
+        records.buffer.putInt(record + 12, -1);
+        stringsEnd += 4 + bytes.length;
+
+        slots.buffer.putInt(slot * 4, id + 1);
+        if (size * 2 > slotCount) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * @return The ID of the key, or -1 if it was never interned.
+     */
+    int find(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        int existing = slots.buffer.getInt(findSlot(bytes, hash(bytes)) * 4);
+        return existing - 1;
+    }
+
+    String key(int id) {
+        int offset = records.buffer.getInt(id * RECORD_WIDTH);
+        byte[] bytes = new byte[strings.buffer.getInt(offset)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = strings.buffer.get(offset + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    int flags(int id) {
+        return records.buffer.getInt(id * RECORD_WIDTH + 4);
+    }
+
+    void addFlags(int id, int flags) {
+        int offset = id * RECORD_WIDTH + 4;
+        records.buffer.putInt(offset, records.buffer.getInt(offset) | flags);
+    }
+
+    /**
+     * @return The ID associated with this one, or -1 if none is.
+     */
+    int associated(int id) {
+        return records.buffer.getInt(id * RECORD_WIDTH + 8);
+    }
+
+    void associate(int id, int other) {
+        records.buffer.putInt(id * RECORD_WIDTH + 8, other);
+    }
+
+    void addReference(int id, int from) {
+        nodes.ensureCapacity((long) nodesEnd + NODE_WIDTH);
+        int head = id * RECORD_WIDTH + 12;
+        nodes.buffer.putInt(nodesEnd, from);
+        nodes.buffer.putInt(nodesEnd + 4, records.buffer.getInt(head));
+        records.buffer.putInt(head, nodesEnd);
+        nodesEnd += NODE_WIDTH;
+    }
+
+    /**
+     * Most recently added first, and with repeats if a reference was added more than once.
+     */
+    void forEachReference(int id, IntConsumer action) {
+        for (int node = records.buffer.getInt(id * RECORD_WIDTH + 12); node >= 0; node = nodes.buffer.getInt(node + 4)) {
+            action.accept(nodes.buffer.getInt(node));
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public void close() {
+        strings.close();
+        records.close();
+        nodes.close();
+        slots.close();
+    }
+
+    private static int hash(byte[] bytes) {
+        int hash = 0;
+        for (byte b : bytes) {
+            hash = 31 * hash + b;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * @return The slot holding the key, or the empty slot where it belongs.
+     */
+    private int findSlot(byte[] bytes, int hash) {
+        int mask = slotCount - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots.buffer.getInt(slot * 4);
+            if (entry == 0 || keyEquals(entry - 1, bytes)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean keyEquals(int id, byte[] bytes) {
+        int offset = records.buffer.getInt(id * RECORD_WIDTH);
+        if (strings.buffer.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (strings.buffer.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        Region oldSlots = slots;
+        slots = regions.create(regionCapacity((long) slotCount * 2 * 4));
+        slotCount *= 2;
+        for (int id = 0; id < size; id++) {
+            int offset = records.buffer.getInt(id * RECORD_WIDTH);
+            byte[] bytes = new byte[strings.buffer.getInt(offset)];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = strings.buffer.get(offset + 4 + i);
+            }
+            slots.buffer.putInt(findSlot(bytes, hash(bytes)) * 4, id + 1);
+        }
+        oldSlots.close();
+    }
+
+    /**
+     * @throws IllegalStateException If a region would need to hold more than it can.
+     */
+    private static int regionCapacity(long bytes) {
+        if (bytes > MAX_REGION_CAPACITY) {
+            throw new IllegalStateException("The symbol table has outgrown the " + MAX_REGION_CAPACITY +
+                                            " bytes a region can hold, needing " + bytes);
+        }
+        return (int) bytes;
+    }
+
+    private interface RegionFactory {
+        Region create(int capacity);
+    }
+
+    /**
+     * A buffer that grows, preserving its contents. Accessed with absolute indexes only.
+     */
+    private abstract static class Region implements Closeable {
+        ByteBuffer buffer;
+
+        void ensureCapacity(long bytes) {
+            if (bytes > buffer.capacity()) {
+                regionCapacity(bytes);
+                grow((int) Math.min(Math.max(bytes, (long) buffer.capacity() * 2), MAX_REGION_CAPACITY));
+            }
+        }
+
+        abstract void grow(int capacity);
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class HeapRegion extends Region {
+        HeapRegion(int capacity) {
+            buffer = ByteBuffer.allocate(capacity);
+        }
+
+        @Override
+        void grow(int capacity) {
+            ByteBuffer old = buffer.duplicate();
+            old.clear();
+            buffer = ByteBuffer.allocate(capacity);
+            buffer.put(old);
+        }
+    }
+
+    /**
+     * Mapping past the end of the file extends it, so growing is a remap of the same file and copies nothing. There
+     * is no way to unmap a buffer in Java 8, so each mapping a region grows out of, and the last one once the region
+     * is closed, stays mapped until its buffer is garbage collected. Until then it takes address space, though no
+     * more memory than the pages of it that were touched.
+     */
+    private static class MappedRegion extends Region {
+        private final Path file;
+        private final FileChannel channel;
+
+        MappedRegion(Path directory, int capacity) {
+            try {
+                file = Files.createTempFile(directory, "symbols", ".bin");
+                channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                grow(capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        void grow(int capacity) {
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // left to the temporary directory's cleanup, such as where a mapped file can't be deleted
+            }
+        }
+    }
+}
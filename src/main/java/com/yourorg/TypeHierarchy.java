@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.tree.JavaType;
+import org.openrewrite.java.tree.TypeUtils;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The supertypes of each type, and the methods it inherits, resolved once per fully qualified name and shared by
+ * every compilation unit of a run. Once a type has been seen, whether it is assignable to a contract such as
+ * {@code java.io.Serializable}, or whether a supertype declares a method, is a single lookup.
+ * <p>
+ * Types are keyed by their erased fully qualified name, so every parameterization of a type shares one entry.
+ */
+final class TypeHierarchy {
+    private static final String TYPE_HIERARCHY = TypeHierarchy.class.getName();
+
+    /**
+     * For each type, itself and every class and interface it extends or implements, at any distance.
+     */
+    private final Map<String, Set<String>> supertypes = new ConcurrentHashMap<>();
+
+    /**
+     * For each type, the name and arity, as {@code name/arity}, of every method declared by a proper supertype.
+     */
+    private final Map<String, Set<String>> inheritedMethods = new ConcurrentHashMap<>();
+
+    /**
+     * @return The hierarchy shared by every recipe and compilation unit of the execution context.
+     */
+    static TypeHierarchy of(ExecutionContext ctx) {
+        synchronized (ctx) {
+            TypeHierarchy hierarchy = ctx.getMessage(TYPE_HIERARCHY);
+            if (hierarchy == null) {
+                hierarchy = new TypeHierarchy();
+                ctx.putMessage(TYPE_HIERARCHY, hierarchy);
+            }
+            return hierarchy;
+        }
+    }
+
+    /**
+     * Share this hierarchy with the recipes run in another execution context, such as one of many created for a
+     * single run.
+     */
+    void shareWith(ExecutionContext ctx) {
+        synchronized (ctx) {
+            ctx.putMessage(TYPE_HIERARCHY, this);
+        }
+    }
+
+    /**
+     * @return false if the type is not attributed.
+     */
+    boolean isAssignableTo(String fullyQualifiedName, @Nullable JavaType type) {
+        JavaType.FullyQualified fullyQualified = TypeUtils.asFullyQualified(type);
+        return fullyQualified != null && supertypes(fullyQualified).contains(fullyQualifiedName);
+    }
+
+    /**
+     * @return Whether a class or interface the declaring type extends or implements declares a method by the same
+     * name and with as many parameters.
+     */
+    boolean isDeclaredInSupertype(JavaType.Method method) {
+        JavaType.FullyQualified declaringType = method.getDeclaringType();
+        return declaringType != null &&
+               inheritedMethods(declaringType).contains(method.getName() + '/' + method.getParameterTypes().size());
+    }
+
+    // entries are computed outside of computeIfAbsent, which can't be called recursively on the same map. two
+    // threads may both compute an entry, and either result is kept.
+
+    /**
+     * @return The type itself and every class and interface it extends or implements, at any distance.
+     */
+    Set<String> supertypes(JavaType.FullyQualified type) {
+        Set<String> names = supertypes.get(type.getFullyQualifiedName());
+        if (names == null) {
+            Set<String> computed = new HashSet<>();
+            computed.add(type.getFullyQualifiedName());
+            if (type.getSupertype() != null) {
+                computed.addAll(supertypes(type.getSupertype()));
+            }
+            for (JavaType.FullyQualified anInterface : type.getInterfaces()) {
+                computed.addAll(supertypes(anInterface));
+            }
+            names = Collections.unmodifiableSet(computed);
+            supertypes.putIfAbsent(type.getFullyQualifiedName(), names);
+        }
+        return names;
+    }
+
+    private Set<String> inheritedMethods(JavaType.FullyQualified type) {
+        Set<String> methods = inheritedMethods.get(type.getFullyQualifiedName());
+        if (methods == null) {
+            Set<String> computed = new HashSet<>();
+            if (type.getSupertype() != null) {
+                inherit(type.getSupertype(), computed);
+            }
+            for (JavaType.FullyQualified anInterface : type.getInterfaces()) {
+                inherit(anInterface, computed);
+            }
+            methods = Collections.unmodifiableSet(computed);
+            inheritedMethods.putIfAbsent(type.getFullyQualifiedName(), methods);
+        }
+        return methods;
+    }
+
+    private void inherit(JavaType.FullyQualified supertype, Set<String> methods) {
+        for (JavaType.Method method : supertype.getMethods()) {
+            methods.add(method.getName() + '/' + method.getParameterTypes().size());
+        }
+        methods.addAll(inheritedMethods(supertype));
+    }
+}
@@ -0,0 +1,1047 @@
+/*
+ * Copyright 2021 the original author or authors.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * https://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.yourorg;
+
+import org.openrewrite.Cursor;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.Tree;
+import org.openrewrite.internal.lang.Nullable;
+import org.openrewrite.java.JavaIsoVisitor;
+import org.openrewrite.java.tree.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * What each method of a top-level class, and of every class nested in it at any depth, reads, writes and calls, and
+ * whether it uses {@code this} or an enclosing instance. The whole class is analyzed in a single traversal.
+ * <p>
+ * Members are identified by key: their simple name, or their declaring type and name when type attributed. Within a
+ * run, {@link #of(J.ClassDeclaration, boolean, ExecutionContext)} analyzes each class once, so recipes composed
+ * together share a single traversal.
+ */
+public final class UsageAnalysis {
+    private static final String MEMOIZED_ANALYSES = UsageAnalysis.class.getName();
+
+    static final int READ = 0;
+    static final int WRITE = 1;
+    static final int CALL = 2;
+
+    private final J.ClassDeclaration classDeclaration;
+    private final boolean typeAttributed;
+
+    final List<ClassUsage> classes = new ArrayList<>();
+
+    /**
+     * The number of method declarations in the class, including constructors and methods of nested classes.
+     */
+    int methodCount;
+
+    /**
+     * The number of tree elements visited to produce this analysis.
+     */
+    long visits;
+
+    /**
+     * The most tree elements to visit before giving up.
+     */
+    private final long maxVisits;
+
+    /**
+     * The file the class is declared in, for {@link PhaseEvents}, if it is known.
+     */
+    @Nullable
+    private final String sourcePath;
+
+    private UsageAnalysis(J.ClassDeclaration classDeclaration, boolean typeAttributed, long maxVisits, @Nullable String sourcePath) {
+        this.classDeclaration = classDeclaration;
+        this.typeAttributed = typeAttributed;
+        this.maxVisits = maxVisits;
+        this.sourcePath = sourcePath;
+    }
+
+    /**
+     * @return The analysis of the class, computed at most once per class and execution context.
+     */
+    public static UsageAnalysis of(J.ClassDeclaration clazz, boolean typeAttributed, ExecutionContext ctx) {
+        return of(clazz, typeAttributed, Long.MAX_VALUE, null, ctx);
+    }
+
+    /**
+     * @param maxVisits The most tree elements to visit before giving up. A memoized analysis is returned whatever
+     *                  its number of {@link #visits}.
+     * @param sourcePath The file the class is declared in, as recorded by {@link PhaseEvents}.
+     * @throws WorkBudgetExceeded If analyzing the class takes more visits, in which case nothing is memoized.
+     */
+    static UsageAnalysis of(J.ClassDeclaration clazz, boolean typeAttributed, long maxVisits, @Nullable String sourcePath,
+                            ExecutionContext ctx) {
+        Map<String, UsageAnalysis> analyses = memoizedAnalyses(ctx);
+        String key = clazz.getId() + (typeAttributed ? "/typed" : "");
+        UsageAnalysis analysis = analyses.get(key);
+        // a tree keeps its ID when a recipe changes it, so an analysis is only reused for the very same tree
+        if (analysis == null || analysis.classDeclaration != clazz) {
+            analysis = analyze(clazz, typeAttributed, maxVisits, sourcePath);
+            analyses.put(key, analysis);
+        }
+        return analysis;
+    }
+
+    private static Map<String, UsageAnalysis> memoizedAnalyses(ExecutionContext ctx) {
+        synchronized (ctx) {
+            Map<String, UsageAnalysis> analyses = ctx.getMessage(MEMOIZED_ANALYSES);
+            if (analyses == null) {
+                analyses = new ConcurrentHashMap<>();
+                ctx.putMessage(MEMOIZED_ANALYSES, analyses);
+            }
+            return analyses;
+        }
+    }
+
+    /**
+     * Analyze the class without memoization.
+     */
+    static UsageAnalysis analyze(J.ClassDeclaration clazz, boolean typeAttributed) {
+        return analyze(clazz, typeAttributed, Long.MAX_VALUE, null);
+    }
+
+    private static UsageAnalysis analyze(J.ClassDeclaration clazz, boolean typeAttributed, long maxVisits,
+                                         @Nullable String sourcePath) {
+        UsageAnalysis analysis = new UsageAnalysis(clazz, typeAttributed, maxVisits, sourcePath);
+        Object event = PhaseEvents.begin(PhaseEvents.REFERENCE_SCAN);
+        new ScopeScanner(typeAttributed).visit(clazz, analysis);
+        if (event != null) {
+            PhaseEvents.commit(event, sourcePath, analysis.classes.get(0).qualifiedName(typeAttributed), analysis.visits);
+        }
+        return analysis;
+    }
+
+    /**
+     * Collect the members declared directly in a top-level class.
+     */
+    static ClassUsage collectMembers(J.ClassDeclaration clazz, boolean typeAttributed) {
+        return collectMembers(null, null, clazz, clazz.getBody(), clazz.getSimpleName(), clazz.getType(),
+                clazz.getKind() == J.ClassDeclaration.Kind.Type.Interface, false, false, typeAttributed);
+    }
+
+    private static ClassUsage collectMembers(@Nullable ClassUsage enclosing, @Nullable MethodUsage enclosingMethod,
+                                             @Nullable J.ClassDeclaration declaration, J.Block body, @Nullable String name,
+                                             @Nullable JavaType.FullyQualified type, boolean isInterface,
+                                             boolean hasOuterInstance, boolean inner, boolean typeAttributed) {
+        ClassUsage scope = new ClassUsage(enclosing, enclosingMethod, declaration, body, name, type, isInterface,
+                hasOuterInstance, inner);
+        for (Statement statement : body.getStatements()) {
+            // aggregate all variable declarations, noting which are instance data. interface fields are always static.
+            if (statement instanceof J.VariableDeclarations) {
+                J.VariableDeclarations vd = (J.VariableDeclarations) statement;
+                boolean instanceData = !isInterface && !vd.hasModifier(J.Modifier.Type.Static);
+                if (instanceData) {
+                    scope.instanceFieldCount += vd.getVariables().size();
+                }
+                for (J.VariableDeclarations.NamedVariable variable : vd.getVariables()) {
+                    scope.addVariable(variable.getSimpleName(), instanceData);
+                    if (typeAttributed) {
+                        scope.addVariable(Keys.fieldKey(type, variable), instanceData);
+                    }
+                }
+            }
+            // aggregate all method declarations, constructors aside
+            if (statement instanceof J.MethodDeclaration) {
+                J.MethodDeclaration md = (J.MethodDeclaration) statement;
+                if (md.isConstructor()) {
+                    continue;
+                }
+                boolean instanceMethod = !md.hasModifier(J.Modifier.Type.Static);
+                MethodUsage method = scope.addMethod(md);
+                scope.addMethodKey(md.getSimpleName(), method, instanceMethod);
+                if (typeAttributed) {
+                    scope.addMethodKey(Keys.methodKey(type, md), method, instanceMethod);
+                }
+            }
+            // instantiating an inner class requires an instance of this one
+            if (statement instanceof J.ClassDeclaration) {
+                J.ClassDeclaration member = (J.ClassDeclaration) statement;
+                boolean innerClass = !isInterface && !member.hasModifier(J.Modifier.Type.Static) &&
+                        member.getKind() == J.ClassDeclaration.Kind.Type.Class;
+                scope.addInstantiation(member.getSimpleName(), innerClass);
+            }
+        }
+        return scope;
+    }
+
+    public J.ClassDeclaration getClassDeclaration() {
+        return classDeclaration;
+    }
+
+    public boolean isTypeAttributed() {
+        return typeAttributed;
+    }
+
+    /**
+     * @return The top-level class followed by every class nested in it, including local and anonymous classes, in
+     * the order they are declared.
+     */
+    public List<ClassUsage> getClasses() {
+        return Collections.unmodifiableList(classes);
+    }
+
+    /**
+     * The members declared directly in the body of one class, which may be a top-level, nested, inner, local or
+     * anonymous class. Each member key is given a dense ID within the class, and each method is identified by its
+     * position in {@link #getMethods()}, so that analyses built on these facts can work on {@link BitSet}s and
+     * primitive arrays.
+     */
+    public static final class ClassUsage {
+        @Nullable
+        final ClassUsage enclosing;
+
+        /**
+         * For local and anonymous classes, the method of the enclosing class in whose body this class is declared.
+         */
+        @Nullable
+        final MethodUsage enclosingMethod;
+
+        @Nullable
+        private final J.ClassDeclaration declaration;
+
+        final J.Block body;
+
+        @Nullable
+        final String name;
+
+        /**
+         * The type of the class, or of an anonymous class the type it instantiates. Null if not type attributed.
+         */
+        @Nullable
+        final JavaType.FullyQualified type;
+
+        final boolean isInterface;
+        final boolean hasOuterInstance;
+        final boolean inner;
+        int instanceFieldCount;
+
+        /**
+         * Whether code anywhere in this class, in a method, constructor, initializer or nested class, uses the
+         * instance of the enclosing class.
+         */
+        boolean usesOuterInstance;
+
+        private final Map<String, Integer> memberIds = new HashMap<>();
+
+        /**
+         * Member IDs by the simple name of a member class, for resolving instantiations.
+         */
+        private final Map<String, Integer> instantiationIds = new HashMap<>(4);
+
+        /**
+         * The key of each member ID, for presenting facts. An instantiation is keyed as {@code new Name}.
+         */
+        private final List<String> keys = new ArrayList<>();
+
+        /**
+         * Instance fields, and instantiations of inner classes, each of which requires an instance of this class.
+         */
+        final BitSet instanceVariables = new BitSet();
+
+        final BitSet instanceMethods = new BitSet();
+
+        /**
+         * For each member ID, the methods declared under it, or null if it is not a method. Overloads share an ID.
+         */
+        private IntList[] methodsByMember = new IntList[8];
+
+        final List<MethodUsage> methods = new ArrayList<>();
+        private final Map<J.MethodDeclaration, MethodUsage> methodsByDeclaration = new IdentityHashMap<>();
+
+        private ClassUsage(@Nullable ClassUsage enclosing, @Nullable MethodUsage enclosingMethod,
+                           @Nullable J.ClassDeclaration declaration, J.Block body, @Nullable String name,
+                           @Nullable JavaType.FullyQualified type, boolean isInterface, boolean hasOuterInstance,
+                           boolean inner) {
+            this.enclosing = enclosing;
+            this.enclosingMethod = enclosingMethod;
+            this.declaration = declaration;
+            this.body = body;
+            this.name = name;
+            this.type = type;
+            this.isInterface = isInterface;
+            this.hasOuterInstance = hasOuterInstance;
+            this.inner = inner;
+        }
+
+        /**
+         * @return The class declaration, or null for an anonymous class.
+         */
+        @Nullable
+        public J.ClassDeclaration getDeclaration() {
+            return declaration;
+        }
+
+        /**
+         * @return The fully qualified name if it is known, otherwise the simple names of this and the enclosing classes,
+         * joined by dots, with {@code <anonymous>} for anonymous classes.
+         */
+        String qualifiedName(boolean typeAttributed) {
+            if (typeAttributed && declaration != null && declaration.getType() != null) {
+                return declaration.getType().getFullyQualifiedName();
+            }
+            StringBuilder qualifiedName = new StringBuilder(name == null ? "<anonymous>" : name);
+            for (ClassUsage outer = enclosing; outer != null; outer = outer.enclosing) {
+                qualifiedName.insert(0, '.').insert(0, outer.name == null ? "<anonymous>" : outer.name);
+            }
+            return qualifiedName.toString();
+        }
+
+        /**
+         * @return Whether this is an inner, local or anonymous class, none of which can declare static members before
+         * Java 16.
+         */
+        public boolean isInner() {
+            return inner;
+        }
+
+        /**
+         * @return Whether instances of this class hold a reference to an instance of the enclosing class.
+         */
+        public boolean hasOuterInstance() {
+            return hasOuterInstance;
+        }
+
+        /**
+         * @return Whether the reference to an enclosing instance is ever used. A member class for which this is false
+         * could be static.
+         */
+        public boolean usesOuterInstance() {
+            return usesOuterInstance;
+        }
+
+        /**
+         * @return The methods declared directly in this class, constructors aside, in the order they are declared.
+         */
+        public List<MethodUsage> getMethods() {
+            return Collections.unmodifiableList(methods);
+        }
+
+        @Nullable
+        public MethodUsage getMethod(J.MethodDeclaration declaration) {
+            return methodsByDeclaration.get(declaration);
+        }
+
+        /**
+         * @return The keys of instance fields, and of inner classes, whose use requires an instance of this class.
+         */
+        public Set<String> getInstanceVariables() {
+            Set<String> instanceVariableKeys = new LinkedHashSet<>();
+            for (int id = instanceVariables.nextSetBit(0); id >= 0; id = instanceVariables.nextSetBit(id + 1)) {
+                instanceVariableKeys.add(keys.get(id));
+            }
+            return instanceVariableKeys;
+        }
+
+        private int memberId(Map<String, Integer> ids, String key, String presentedKey) {
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = keys.size();
+                keys.add(presentedKey);
+                ids.put(key, id);
+            }
+            return id;
+        }
+
+        private void addVariable(String key, boolean instanceData) {
+            int id = memberId(memberIds, key, key);
+            if (instanceData) {
+                instanceVariables.set(id);
+            }
+        }
+
+        private void addInstantiation(String className, boolean innerClass) {
+            int id = memberId(instantiationIds, className, "new " + className);
+            if (innerClass) {
+                instanceVariables.set(id);
+            }
+        }
+
+        private MethodUsage addMethod(J.MethodDeclaration declaration) {
+            MethodUsage method = new MethodUsage(this, declaration, methods.size());
+            methods.add(method);
+            methodsByDeclaration.put(declaration, method);
+            return method;
+        }
+
+        private void addMethodKey(String key, MethodUsage method, boolean instanceMethod) {
+            int id = memberId(memberIds, key, key);
+            if (instanceMethod) {
+                instanceMethods.set(id);
+            }
+            if (id >= methodsByMember.length) {
+                methodsByMember = Arrays.copyOf(methodsByMember, Math.max(id + 1, methodsByMember.length * 2));
+            }
+            if (methodsByMember[id] == null) {
+                methodsByMember[id] = new IntList(1);
+            }
+            methodsByMember[id].add(method.index);
+        }
+
+        /**
+         * @return The member ID, or -1 if this class declares no member by that key.
+         */
+        int resolve(String key, boolean instantiation) {
+            Integer id = (instantiation ? instantiationIds : memberIds).get(key);
+            return id == null ? -1 : id;
+        }
+
+        /**
+         * @return The positions of the methods declared under the member ID, or null if it is not a method.
+         */
+        @Nullable
+        IntList methodsOf(int member) {
+            return member < methodsByMember.length ? methodsByMember[member] : null;
+        }
+
+        /**
+         * @return The key the member ID was registered under, for presenting facts.
+         */
+        String key(int member) {
+            return keys.get(member);
+        }
+
+        boolean requiresInstance(int member) {
+            return instanceVariables.get(member) || instanceMethods.get(member);
+        }
+    }
+
+    public static final class MethodUsage {
+        final ClassUsage owner;
+        private final J.MethodDeclaration declaration;
+
+        /**
+         * The position of this method in its class.
+         */
+        final int index;
+
+        /**
+         * The members of its own class that this method reads, writes or calls, possibly with repeats. Each entry is
+         * a member ID shifted left by two, or'ed with the kind of use. Allocated on the first reference.
+         */
+        @Nullable
+        IntList references;
+
+        /**
+         * Whether the method uses {@code this} or {@code super}, or an enclosing instance, other than through the
+         * members of its own class.
+         */
+        boolean usesThis;
+
+        /**
+         * Whether a method reference names this method with a receiver other than {@code this}, such as
+         * {@code Outer.this::method}, {@code field::method} or {@code Type::method}. Made static, the method would no
+         * longer match the reference, which only {@code this::method} is rewritten for.
+         */
+        boolean referencedWithReceiver;
+
+        /**
+         * The position of this method among all method declarations of the top-level class, in the order they are
+         * visited.
+         */
+        int ordinal = -1;
+
+        private MethodUsage(ClassUsage owner, J.MethodDeclaration declaration, int index) {
+            this.owner = owner;
+            this.declaration = declaration;
+            this.index = index;
+        }
+
+        public J.MethodDeclaration getDeclaration() {
+            return declaration;
+        }
+
+        public boolean usesThis() {
+            return usesThis;
+        }
+
+        /**
+         * @return The keys of the members of its class, or of a class it is nested in, that this method reads. Reads
+         * made by local and anonymous classes declared in the method count as its own.
+         */
+        public Set<String> getReads() {
+            return keys(READ);
+        }
+
+        public Set<String> getWrites() {
+            return keys(WRITE);
+        }
+
+        public Set<String> getCalls() {
+            return keys(CALL);
+        }
+
+        private Set<String> keys(int kind) {
+            Set<String> keys = new LinkedHashSet<>();
+            for (int r = 0; references != null && r < references.size; r++) {
+                int reference = references.values[r];
+                if ((reference & 3) == kind) {
+                    keys.add(owner.keys.get(reference >>> 2));
+                }
+            }
+            return keys;
+        }
+
+        private void reference(int member, int kind) {
+            if (references == null) {
+                references = new IntList(4);
+            }
+            references.add(member << 2 | kind);
+        }
+
+        /**
+         * @return true as soon as one reference, of any kind, is to a member in the set.
+         */
+        boolean referencesAny(BitSet members) {
+            for (int r = 0; references != null && r < references.size; r++) {
+                if (members.get(references.values[r] >>> 2)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Thrown when a class takes more work to analyze than it is allowed. Work is counted in tree elements visited and
+     * propagation steps, never in time, so whether it is thrown is the same from one run to the next.
+     */
+    static final class WorkBudgetExceeded extends RuntimeException {
+        WorkBudgetExceeded() {
+            // thrown to abandon a class rather than to report a fault, so a stack trace would only be overhead
+            super("Work budget exceeded", null, false, false);
+        }
+    }
+
+    /**
+     * A growable list of primitive ints.
+     */
+    static final class IntList {
+        int[] values;
+        int size;
+
+        IntList(int capacity) {
+            values = new int[capacity];
+        }
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Key construction for the members registered in each {@link ClassUsage}.
+     * <p>
+     * When type attributed, resolved members are keyed by their declaring type and name, and references to
+     * locals and parameters are not recorded at all. References without type attribution are recorded by
+     * simple name, so every member is registered under both its key and its simple name.
+     */
+    private static class Keys {
+        private static String fieldKey(JavaType.FullyQualified owner, String name) {
+            return owner.getFullyQualifiedName() + '#' + name;
+        }
+
+        private static String fieldKey(@Nullable JavaType.FullyQualified type, J.VariableDeclarations.NamedVariable variable) {
+            JavaType.Variable variableType = variable.getVariableType();
+            if (variableType != null && variableType.getOwner() instanceof JavaType.FullyQualified) {
+                return fieldKey((JavaType.FullyQualified) variableType.getOwner(), variable.getSimpleName());
+            }
+            return type == null ? variable.getSimpleName() : fieldKey(type, variable.getSimpleName());
+        }
+
+        private static String methodKey(JavaType.FullyQualified declaringType, String name) {
+            return declaringType.getFullyQualifiedName() + '#' + name + "()";
+        }
+
+        private static String methodKey(@Nullable JavaType.FullyQualified type, J.MethodDeclaration method) {
+            JavaType.Method methodType = method.getMethodType();
+            if (methodType != null) {
+                return methodKey(methodType.getDeclaringType(), methodType.getName());
+            }
+            return type == null ? method.getSimpleName() : methodKey(type, method.getSimpleName());
+        }
+    }
+
+    /**
+     * A single traversal of a top-level class that keeps a stack of class scopes, so that each class body, however
+     * deeply nested, is scanned exactly once. A reference is recorded against the method it appears in. When it names
+     * a member of an enclosing class instead, it is also attributed to the enclosing class's method that declares the
+     * local or anonymous class the reference is in, and any method in between that needs the enclosing instance is
+     * marked as using {@code this}.
+     */
+    private static class ScopeScanner extends JavaIsoVisitor<UsageAnalysis> {
+        private final boolean typeAttributed;
+
+        @Nullable
+        private ClassUsage currentScope;
+
+        @Nullable
+        private MethodUsage currentMethod;
+
+        private ScopeScanner(boolean typeAttributed) {
+            this.typeAttributed = typeAttributed;
+        }
+
+        @Override
+        public @Nullable J visit(@Nullable Tree tree, UsageAnalysis analysis) {
+            if (++analysis.visits > analysis.maxVisits) {
+                throw new WorkBudgetExceeded();
+            }
+            return super.visit(tree, analysis);
+        }
+
+        @Override
+        public J.Block visitBlock(J.Block block, UsageAnalysis analysis) {
+            Object parent = getCursor().dropParentUntil(References.isJ).getValue();
+            ClassUsage scope = null;
+            Object event = null;
+            if (parent instanceof J.ClassDeclaration && ((J.ClassDeclaration) parent).getBody() == block) {
+                event = PhaseEvents.begin(PhaseEvents.MEMBER_COLLECTION);
+                scope = classScope((J.ClassDeclaration) parent);
+            } else if (parent instanceof J.NewClass && ((J.NewClass) parent).getBody() == block) {
+                event = PhaseEvents.begin(PhaseEvents.MEMBER_COLLECTION);
+                scope = anonymousClassScope((J.NewClass) parent);
+            }
+            if (scope == null) {
+                return super.visitBlock(block, analysis);
+            }
+            if (event != null) {
+                PhaseEvents.commit(event, analysis.sourcePath, scope.qualifiedName(typeAttributed), scope.keys.size());
+            }
+
+            ClassUsage enclosingScope = currentScope;
+            MethodUsage enclosingMethod = currentMethod;
+            analysis.classes.add(scope);
+            currentScope = scope;
+            currentMethod = null;
+            try {
+                return super.visitBlock(block, analysis);
+            } finally {
+                currentScope = enclosingScope;
+                currentMethod = enclosingMethod;
+            }
+        }
+
+        private ClassUsage classScope(J.ClassDeclaration clazz) {
+            boolean isInterface = clazz.getKind() == J.ClassDeclaration.Kind.Type.Interface;
+            if (currentScope == null) {
+                return collectMembers(null, null, clazz, clazz.getBody(), clazz.getSimpleName(), clazz.getType(),
+                        isInterface, false, false, typeAttributed);
+            }
+
+            // enums, records, interfaces and annotations are implicitly static wherever they are declared
+            boolean implicitlyStatic = clazz.getKind() != J.ClassDeclaration.Kind.Type.Class;
+            boolean hasOuterInstance;
+            boolean inner;
+            MethodUsage enclosingMethod = null;
+            J declaredIn = getCursor().dropParentUntil(References.isJ).dropParentUntil(References.isJ).getValue();
+            if (declaredIn == currentScope.body) {
+                // a member class
+                hasOuterInstance = !(implicitlyStatic || clazz.hasModifier(J.Modifier.Type.Static) || currentScope.isInterface);
+                inner = hasOuterInstance;
+            } else {
+                // a local class
+                enclosingMethod = currentMethod;
+                hasOuterInstance = !implicitlyStatic && !inStaticMethod();
+                inner = true;
+            }
+            return collectMembers(currentScope, enclosingMethod, clazz, clazz.getBody(), clazz.getSimpleName(),
+                    clazz.getType(), isInterface, hasOuterInstance, inner, typeAttributed);
+        }
+
+        private ClassUsage anonymousClassScope(J.NewClass newClass) {
+            assert newClass.getBody() != null;
+            return collectMembers(currentScope, currentMethod, null, newClass.getBody(), null,
+                    TypeUtils.asFullyQualified(newClass.getType()), false, !inStaticMethod(), true, typeAttributed);
+        }
+
+        private boolean inStaticMethod() {
+            return currentMethod != null && currentMethod.declaration.hasModifier(J.Modifier.Type.Static);
+        }
+
+        @Override
+        public J.MethodDeclaration visitMethodDeclaration(J.MethodDeclaration method, UsageAnalysis analysis) {
+            MethodUsage methodUsage = currentScope == null ? null : currentScope.getMethod(method);
+            int ordinal = analysis.methodCount++;
+            if (methodUsage != null) {
+                methodUsage.ordinal = ordinal;
+            }
+
+            MethodUsage enclosingMethod = currentMethod;
+            currentMethod = methodUsage;
+            try {
+                return super.visitMethodDeclaration(method, analysis);
+            } finally {
+                currentMethod = enclosingMethod;
+            }
+        }
+
+        @Override
+        public J.Identifier visitIdentifier(J.Identifier identifier, UsageAnalysis analysis) {
+            J parent = getCursor().dropParentUntil(References.isJ).getValue();
+            if ("this".equals(identifier.getSimpleName()) || "super".equals(identifier.getSimpleName())) {
+                if (currentMethod != null) {
+                    currentMethod.usesThis = true;
+                }
+            } else if (parent instanceof J.MethodDeclaration && ((J.MethodDeclaration) parent).getName() == identifier) {
+                // the name of a method declaration is not a reference to it
+            } else if (typeAttributed && inheritedInstanceMember(identifier, parent)) {
+                // read, written or called, it is a member of an instance, though not one of the classes analyzed
+            } else if (declaredInScopeChain(identifier.getSimpleName()) && References.isRhsValue(getCursor())) {
+                if (parent instanceof J.MethodInvocation && ((J.MethodInvocation) parent).getName() == identifier) {
+                    J.MethodInvocation invocation = (J.MethodInvocation) parent;
+                    record(methodKey(identifier, invocation.getMethodType()), CALL, false, invocation.getSelect() == null);
+                } else if (parent instanceof J.MemberReference && ((J.MemberReference) parent).getReference() == identifier) {
+                    J.MemberReference memberRef = (J.MemberReference) parent;
+                    String key = methodKey(identifier, memberRef.getMethodType());
+                    record(key, CALL, false, false);
+                    if (!isThis(memberRef.getContaining())) {
+                        referencedWithReceiver(key);
+                    }
+                } else {
+                    boolean unqualified = !(parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier);
+                    record(variableKey(identifier), READ, false, unqualified);
+                }
+            }
+            return super.visitIdentifier(identifier, analysis);
+        }
+
+        @Override
+        public J.FieldAccess visitFieldAccess(J.FieldAccess fieldAccess, UsageAnalysis analysis) {
+            String name = fieldAccess.getSimpleName();
+            if (("this".equals(name) || "super".equals(name)) && fieldAccess.getTarget() instanceof J.Identifier) {
+                qualifiedThis(((J.Identifier) fieldAccess.getTarget()).getSimpleName());
+                return fieldAccess;
+            }
+            return super.visitFieldAccess(fieldAccess, analysis);
+        }
+
+        @Override
+        public J.NewClass visitNewClass(J.NewClass newClass, UsageAnalysis analysis) {
+            J clazz = newClass.getClazz();
+            if (clazz instanceof J.ParameterizedType) {
+                clazz = ((J.ParameterizedType) clazz).getClazz();
+            }
+            if (newClass.getEnclosing() == null && clazz instanceof J.Identifier) {
+                record(((J.Identifier) clazz).getSimpleName(), READ, true, true);
+            }
+            return super.visitNewClass(newClass, analysis);
+        }
+
+        @Override
+        public J.Assignment visitAssignment(J.Assignment assignment, UsageAnalysis analysis) {
+            recordWrite(assignment.getVariable());
+            return super.visitAssignment(assignment, analysis);
+        }
+
+        @Override
+        public J.AssignmentOperation visitAssignmentOperation(J.AssignmentOperation assignOp, UsageAnalysis analysis) {
+            recordWrite(assignOp.getVariable());
+            return super.visitAssignmentOperation(assignOp, analysis);
+        }
+
+        @Override
+        public J.Unary visitUnary(J.Unary unary, UsageAnalysis analysis) {
+            switch (unary.getOperator()) {
+                case PreIncrement:
+                case PreDecrement:
+                case PostIncrement:
+                case PostDecrement:
+                    recordWrite(unary.getExpression());
+                    break;
+                default:
+                    // negation and complement only read their operand
+                    break;
+            }
+            return super.visitUnary(unary, analysis);
+        }
+
+        private void recordWrite(Expression variable) {
+            if (variable instanceof J.Identifier && declaredInScopeChain(((J.Identifier) variable).getSimpleName())) {
+                record(variableKey((J.Identifier) variable), WRITE, false, true);
+            }
+        }
+
+        /**
+         * @return null for references to locals and parameters, which are never instance data.
+         */
+        @Nullable
+        private String variableKey(J.Identifier identifier) {
+            JavaType.Variable fieldType = identifier.getFieldType();
+            if (!typeAttributed || fieldType == null) {
+                return identifier.getSimpleName();
+            } else if (fieldType.getOwner() instanceof JavaType.FullyQualified) {
+                return Keys.fieldKey((JavaType.FullyQualified) fieldType.getOwner(), fieldType.getName());
+            }
+            return null;
+        }
+
+        private String methodKey(J.Identifier name, @Nullable JavaType.Method methodType) {
+            return typeAttributed && methodType != null ?
+                    Keys.methodKey(methodType.getDeclaringType(), methodType.getName()) :
+                    name.getSimpleName();
+        }
+
+        private static boolean isThis(Expression expression) {
+            return expression instanceof J.Identifier && "this".equals(((J.Identifier) expression).getSimpleName());
+        }
+
+        /**
+         * Marks the methods the key resolves to in the innermost class of the scope chain that declares it.
+         */
+        private void referencedWithReceiver(@Nullable String key) {
+            for (ClassUsage scope = currentScope; key != null && scope != null; scope = scope.enclosing) {
+                int member = scope.resolve(key, false);
+                if (member >= 0) {
+                    IntList methods = scope.methodsOf(member);
+                    for (int m = 0; methods != null && m < methods.size; m++) {
+                        scope.methods.get(methods.values[m]).referencedWithReceiver = true;
+                    }
+                    return;
+                }
+            }
+        }
+
+        /**
+         * An unqualified reference to an instance field or method that a class in scope inherits rather than declares
+         * uses the instance of whichever class inherits it, which is the nearest class that can.
+         *
+         * @return Whether the identifier is such a reference.
+         */
+        private boolean inheritedInstanceMember(J.Identifier identifier, J parent) {
+            JavaType owner;
+            if (parent instanceof J.MethodInvocation && ((J.MethodInvocation) parent).getName() == identifier) {
+                J.MethodInvocation invocation = (J.MethodInvocation) parent;
+                JavaType.Method methodType = invocation.getMethodType();
+                if (invocation.getSelect() != null || methodType == null || methodType.hasFlags(Flag.Static)) {
+                    return false;
+                }
+                owner = methodType.getDeclaringType();
+            } else {
+                JavaType.Variable fieldType = identifier.getFieldType();
+                if (fieldType == null || fieldType.hasFlags(Flag.Static) || parent instanceof J.MemberReference ||
+                    parent instanceof J.FieldAccess && ((J.FieldAccess) parent).getName() == identifier) {
+                    return false;
+                }
+                owner = fieldType.getOwner();
+            }
+            if (!(owner instanceof JavaType.FullyQualified) || currentScope == null) {
+                return false;
+            }
+            for (ClassUsage scope = currentScope; scope != null; scope = scope.enclosing) {
+                if (scope.declaration != null && scope.type != null && TypeUtils.isOfType(owner, scope.type)) {
+                    // declared by a class in scope, and so recorded as such
+                    return false;
+                }
+            }
+
+            for (ClassUsage child = null, scope = currentScope; scope != null; child = scope, scope = scope.enclosing) {
+                if (scope.type != null && TypeUtils.isAssignableTo(owner, scope.type)) {
+                    if (child == null) {
+                        if (currentMethod != null) {
+                            currentMethod.usesThis = true;
+                        }
+                    } else {
+                        if (child.enclosingMethod != null) {
+                            child.enclosingMethod.usesThis = true;
+                        }
+                        usesEnclosingInstance(child);
+                    }
+                    return true;
+                }
+            }
+            // the supertypes of the classes in scope are unknown, so assume the nearest one inherits it
+            if (currentMethod != null) {
+                currentMethod.usesThis = true;
+            }
+            return true;
+        }
+
+        /**
+         * Every member is registered under its simple name, so this rules out most references to locals, parameters
+         * and members of other types before any typed key is built for them.
+         */
+        private boolean declaredInScopeChain(String simpleName) {
+            for (ClassUsage scope = currentScope; scope != null; scope = scope.enclosing) {
+                if (scope.resolve(simpleName, false) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @param instantiation Whether the key is the simple name of a class being instantiated.
+         * @param unqualified   Whether the reference has no explicit receiver, and so may implicitly refer to a member
+         *                      of an enclosing class.
+         */
+        private void record(@Nullable String key, int kind, boolean instantiation, boolean unqualified) {
+            if (key == null || currentScope == null) {
+                return;
+            }
+            int member = currentScope.resolve(key, instantiation);
+            if (member >= 0) {
+                if (currentMethod != null) {
+                    currentMethod.reference(member, kind);
+                }
+                return;
+            }
+            if (!unqualified) {
+                return;
+            }
+
+            boolean outerInstanceReachable = currentScope.hasOuterInstance;
+            for (ClassUsage child = currentScope, outer = currentScope.enclosing; outer != null; child = outer, outer = outer.enclosing) {
+                int outerMember = outer.resolve(key, instantiation);
+                if (outerMember >= 0) {
+                    if (child.enclosingMethod != null) {
+                        // attribute the reference to the method the local or anonymous class is declared in
+                        child.enclosingMethod.reference(outerMember, kind);
+                    }
+                    if (outerInstanceReachable && outer.requiresInstance(outerMember)) {
+                        usesEnclosingInstance(child);
+                    }
+                    return;
+                }
+                outerInstanceReachable &= outer.hasOuterInstance;
+            }
+        }
+
+        /**
+         * {@code Outer.this} or {@code Outer.super}.
+         */
+        private void qualifiedThis(String className) {
+            if (currentScope == null || className.equals(currentScope.name)) {
+                if (currentMethod != null) {
+                    currentMethod.usesThis = true;
+                }
+                return;
+            }
+            for (ClassUsage child = currentScope, outer = currentScope.enclosing; outer != null; child = outer, outer = outer.enclosing) {
+                if (className.equals(outer.name)) {
+                    if (child.enclosingMethod != null) {
+                        child.enclosingMethod.usesThis = true;
+                    }
+                    usesEnclosingInstance(child);
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Mark the current method, and every method between it and the outermost scope below {@code upTo}, as needing
+         * an enclosing instance, and every scope up to and including {@code upTo} as using its outer instance.
+         */
+        private void usesEnclosingInstance(ClassUsage upTo) {
+            if (currentMethod != null) {
+                currentMethod.usesThis = true;
+            }
+            for (ClassUsage scope = currentScope; scope != null; scope = scope.enclosing) {
+                scope.usesOuterInstance = true;
+                if (scope == upTo) {
+                    break;
+                }
+                if (scope.enclosingMethod != null) {
+                    scope.enclosingMethod.usesThis = true;
+                }
+            }
+        }
+    }
+
+    // I borrowed this from RemoveUnusedLocalVariables.
+    private static class References {
+        private static final J.Unary.Type[] incrementKinds = {
+                J.Unary.Type.PreIncrement,
+                J.Unary.Type.PreDecrement,
+                J.Unary.Type.PostIncrement,
+                J.Unary.Type.PostDecrement
+        };
+        private static final Predicate<Cursor> isUnaryIncrementKind = t -> t.getValue() instanceof J.Unary && isIncrementKind(t);
+
+        // bound method references allocate on every evaluation, and these are tested for every identifier
+        private static final Predicate<Object> isJ = J.class::isInstance;
+        private static final Predicate<Object> isParentheses = J.Parentheses.class::isInstance;
+        private static final Predicate<Object> isControlParentheses = J.ControlParentheses.class::isInstance;
+
+        private static boolean isIncrementKind(Cursor tree) {
+            if (tree.getValue() instanceof J.Unary) {
+                J.Unary unary = tree.getValue();
+                for (J.Unary.Type kind : incrementKinds) {
+                    if (kind == unary.getOperator()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static @Nullable Cursor dropParentWhile(Predicate<Object> valuePredicate, Cursor cursor) {
+            while (cursor != null && valuePredicate.test(cursor.getValue())) {
+                cursor = cursor.getParent();
+            }
+            return cursor;
+        }
+
+        private static @Nullable Cursor dropParentUntil(Predicate<Object> valuePredicate, Cursor cursor) {
+            while (cursor != null && !valuePredicate.test(cursor.getValue())) {
+                cursor = cursor.getParent();
+            }
+            return cursor;
+        }
+
+        /**
+         * An identifier is considered a right-hand side ("rhs") read operation if it is not used as the left operand
+         * of an assignment, nor as the operand of a stand-alone increment.
+         */
+        private static boolean isRhsValue(Cursor tree) {
+            if (!(tree.getValue() instanceof J.Identifier)) {
+                return false;
+            }
+
+            Cursor parent = dropParentWhile(isParentheses, tree.getParent());
+            assert parent != null;
+            if (parent.getValue() instanceof J.Assignment) {
+                if (dropParentUntil(isControlParentheses, parent) != null) {
+                    return true;
+                }
+                J.Assignment assignment = parent.getValue();
+                return assignment.getVariable() != tree.getValue();
+            }
+
+            if (parent.getValue() instanceof J.VariableDeclarations.NamedVariable) {
+                J.VariableDeclarations.NamedVariable namedVariable = parent.getValue();
+                return namedVariable.getName() != tree.getValue();
+            }
+
+            if (parent.getValue() instanceof J.AssignmentOperation) {
+                J.AssignmentOperation assignmentOperation = parent.getValue();
+                if (assignmentOperation.getVariable() == tree.getValue()) {
+                    J grandParent = parent.dropParentUntil(isJ).getValue();
+                    return (grandParent instanceof Expression || grandParent instanceof J.Return);
+                }
+            }
+
+            return !(isUnaryIncrementKind.test(parent) && parent.dropParentUntil(isJ).getValue() instanceof J.Block);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+import java.lang.management.ManagementFactory;
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class AnalysisAllocationTest {
+
+    /**
+     * Most of this is the cursors and lambdas of the tree traversal itself. An analysis that allocates per pair of
+     * methods, rather than per method, exceeds it many times over at this class size.
+     */
+    private static final long BYTES_PER_METHOD = 32 * 1024;
+
+    private static final int METHODS = 2_000;
+
+    @Test
+    void staysWithinAllocationBudgetPerAnalyzedMethod() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        J.ClassDeclaration clazz = JavaParser.fromJavaVersion().build()
+                .parse(new InMemoryExecutionContext(), source())
+                .get(0).getClasses().get(0);
+
+        // warm up, so that class loading and JIT compilation are not counted
+        for (int i = 0; i < 5; i++) {
+            analyze(clazz);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        BitSet methodsToMakeStatic = analyze(clazz);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertThat(methodsToMakeStatic.cardinality()).isEqualTo(METHODS / 2);
+        assertThat(allocated / METHODS).isLessThan(BYTES_PER_METHOD);
+    }
+
+    private static BitSet analyze(J.ClassDeclaration clazz) {
+        UsageAnalysis analysis = UsageAnalysis.analyze(clazz, false);
+        return MakeFalseInstanceMethodsStatic.propagateInstanceUsage(analysis, new TypeHierarchy(), false, null);
+    }
+
+    /**
+     * Two call chains of equal length. The first ends in an instance field read, the second in a constant.
+     */
+    private static String source() {
+        StringBuilder source = new StringBuilder("class Test {\n  private int field;\n");
+        int chain = METHODS / 2;
+        for (int i = 0; i < chain; i++) {
+            source.append("  private int a").append(i).append("(int p) {\n    return p + ")
+                    .append(i + 1 < chain ? "a" + (i + 1) + "(p)" : "field").append(";\n  }\n");
+            source.append("  private int b").append(i).append("(int p) {\n    return p + ")
+                    .append(i + 1 < chain ? "b" + (i + 1) + "(p)" : "1").append(";\n  }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
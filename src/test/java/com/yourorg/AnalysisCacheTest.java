@@ -0,0 +1,78 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class AnalysisCacheTest {
+
+    @Test
+    void countsHitsAndMisses(@TempDir Path directory) {
+        AnalysisCache cache = AnalysisCache.open(directory, 10);
+        String key = AnalysisCache.key("salt", "class A {}");
+
+        assertThat(cache.get(key)).isNull();
+        cache.put(key, new int[]{0, 2});
+        assertThat(cache.get(key)).containsExactly(0, 2);
+        cache.put(AnalysisCache.key("salt", "class B {}"), new int[0]);
+        assertThat(cache.get(AnalysisCache.key("salt", "class B {}"))).isEmpty();
+
+        assertThat(cache.getHits()).isEqualTo(2);
+        assertThat(cache.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void keysDependOnSalt() {
+        assertThat(AnalysisCache.key("1", "class A {}")).isNotEqualTo(AnalysisCache.key("2", "class A {}"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries(@TempDir Path directory) throws IOException {
+        AnalysisCache cache = AnalysisCache.open(directory, 10);
+        for (int i = 0; i < 10; i++) {
+            String key = AnalysisCache.key("salt", "class C" + i + " {}");
+            cache.put(key, new int[]{i});
+            // make the age of every entry distinct regardless of file system timestamp resolution
+            Files.setLastModifiedTime(directory.resolve(key + ".verdict"), FileTime.fromMillis(1_000_000L * (i + 1)));
+        }
+
+        // overflowing the cache evicts down to 90% of its size, oldest first
+        cache.put(AnalysisCache.key("salt", "class C10 {}"), new int[]{10});
+
+        assertThat(cache.get(AnalysisCache.key("salt", "class C0 {}"))).isNull();
+        assertThat(cache.get(AnalysisCache.key("salt", "class C10 {}"))).containsExactly(10);
+        try (Stream<Path> entries = Files.list(directory)) {
+            assertThat(entries.filter(e -> e.toString().endsWith(".verdict")).count()).isEqualTo(9);
+        }
+    }
+
+    @Test
+    void rejectsADifferentMaximumForADirectoryAlreadyOpen(@TempDir Path directory) {
+        AnalysisCache cache = AnalysisCache.open(directory, 10);
+
+        assertThat(AnalysisCache.open(directory, 10)).isSameAs(cache);
+        assertThatIllegalArgumentException().isThrownBy(() -> AnalysisCache.open(directory, 20));
+    }
+
+    @Test
+    void deletesTheTemporaryFileOfAFailedWrite(@TempDir Path directory) throws IOException {
+        AnalysisCache cache = AnalysisCache.open(directory, 10);
+        String key = AnalysisCache.key("salt", "class D {}");
+        // a non-empty directory in the way of the entry makes the move fail
+        Files.createDirectories(directory.resolve(key + ".verdict").resolve("occupied"));
+
+        cache.put(key, new int[]{0});
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.filter(f -> f.toString().endsWith(".tmp"))).isEmpty();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BatchDriverTest {
+
+    @TempDir
+    Path directory;
+
+    private Path source;
+
+    private void writeSources() throws IOException {
+        source = Files.createDirectories(directory.resolve("src"));
+        Files.createDirectories(source.resolve("com/example"));
+        Files.write(source.resolve("com/example/Greeter.java"), String.join("\n",
+                "package com.example;",
+                "",
+                "class Greeter {",
+                "  private String greet(String name) {",
+                "    return \"Hello \" + name;",
+                "  }",
+                "}",
+                "").getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("com/example/Counter.java"), String.join("\n",
+                "package com.example;",
+                "",
+                "class Counter {",
+                "  private int count;",
+                "",
+                "  private int next() {",
+                "    return ++count;",
+                "  }",
+                "}",
+                "").getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("README.md"), "not java".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesPatchedFilesUnderTheOutputPath() throws IOException {
+        writeSources();
+        Path output = directory.resolve("out");
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        BatchDriver.Summary summary = new BatchDriver(BatchDriver.Options.parse(
+                "--source", source.toString(), "--output", "write", "--output-path", output.toString(), "--threads", "2"))
+                .run(new PrintStream(new ByteArrayOutputStream()), new PrintStream(err));
+
+        assertThat(summary.files).isEqualTo(2);
+        assertThat(summary.changed).isEqualTo(1);
+        assertThat(summary.failed).isEqualTo(0);
+        assertThat(new String(Files.readAllBytes(output.resolve("com/example/Greeter.java")), StandardCharsets.UTF_8))
+                .contains("private static String greet(String name)");
+        assertThat(output.resolve("com/example/Counter.java")).doesNotExist();
+        assertThat(new String(Files.readAllBytes(source.resolve("com/example/Greeter.java")), StandardCharsets.UTF_8))
+                .contains("private String greet(String name)");
+        assertThat(err.toString()).contains("2 files, 1 changed, 0 failed").contains("files/s");
+    }
+
+    @Test
+    void writesDiffsToStandardOutput() throws IOException {
+        writeSources();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BatchDriver.Summary summary = new BatchDriver(BatchDriver.Options.parse("--source", source.toString()))
+                .run(new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+
+        assertThat(summary.changed).isEqualTo(1);
+        assertThat(out.toString())
+                .contains("-  private String greet(String name) {")
+                .contains("+  private static String greet(String name) {")
+                .doesNotContain("Counter");
+    }
+
+    @Test
+    void streamsFilesInBatchesUnderAMemoryCeiling() throws IOException {
+        writeSources();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        BatchDriver.Options options = BatchDriver.Options.parse("--source", source.toString(), "--batch-size", "2",
+                "--memory-ceiling", "1k", "--threads", "1");
+        assertThat(options.memoryCeiling).isEqualTo(1024);
+        BatchDriver.Summary summary = new BatchDriver(options).run(new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+
+        assertThat(summary.files).isEqualTo(2);
+        assertThat(summary.batches).isEqualTo(1);
+        assertThat(summary.changed).isEqualTo(1);
+        assertThat(out.toString()).contains("+  private static String greet(String name) {");
+        assertThat(BatchDriver.Options.parse("--source", source.toString(), "--memory-ceiling", "4g").memoryCeiling)
+                .isEqualTo(4L << 30);
+    }
+
+    @Test
+    void rejectsInvalidArguments() throws IOException {
+        writeSources();
+        assertThatThrownBy(() -> BatchDriver.Options.parse("--output", "diff"))
+                .hasMessageContaining("--source is required");
+        assertThatThrownBy(() -> BatchDriver.Options.parse("--source", source.toString(), "--output", "patch"))
+                .hasMessageContaining("Unknown output mode patch");
+        assertThatThrownBy(() -> BatchDriver.Options.parse("--source", source.toString(), "--threads", "0"))
+                .hasMessageContaining("at least 1");
+        assertThatThrownBy(() -> BatchDriver.Options.parse("--source", source.toString(), "--classpath"))
+                .hasMessageContaining("requires a value");
+        assertThatThrownBy(() -> BatchDriver.Options.parse("--source", source.toString(), "--memory-ceiling", "lots"))
+                .hasMessageContaining("must be a size");
+    }
+}
@@ -0,0 +1,396 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Runs {@link BaselineAnalysis}, the analysis as first written, and the indexed engine of
+ * {@link MakeFalseInstanceMethodsStatic} over random classes, and asserts that they make the same methods static.
+ * A case on which they disagree is shrunk, by dropping methods, fields and statements for as long as they still
+ * disagree, and reported as source.
+ * <p>
+ * The classes are those on which the baseline's name-based search is exact: a top-level class whose fields, methods
+ * and locals all have distinct names, with one variable per field declaration and no {@code this}, so that any
+ * disagreement is a change in behavior rather than a known imprecision of the baseline.
+ */
+class DifferentialEquivalenceTest {
+
+    private static final long SEED = 0x5eed_2021L;
+
+    private static final int CASES = 250;
+
+    private final JavaParser parser = JavaParser.fromJavaVersion().logCompilationWarningsAndErrors(false).build();
+
+    @Test
+    void baselineAndEngineMakeTheSameMethodsStatic() {
+        Random random = new Random(SEED);
+        long baselineTotal = 0;
+        long engineTotal = 0;
+        for (int i = 0; i < CASES; i++) {
+            GeneratedClass generated = GeneratedClass.random(random);
+            J.ClassDeclaration clazz = parse(generated);
+            if (!BaselineAnalysis.methodsToMakeStatic(clazz).equals(engine(clazz))) {
+                GeneratedClass minimal = shrink(generated, this::disagree);
+                J.ClassDeclaration reproducer = parse(minimal);
+                fail(String.format("Case %d of seed %#x: the baseline and the engine disagree. Minimal reproducer:%n%s" +
+                                   "baseline makes static: %s%nengine makes static:   %s", i, SEED, minimal.render(),
+                        BaselineAnalysis.methodsToMakeStatic(reproducer), engine(reproducer)));
+            }
+
+            long baseline = fastest(() -> BaselineAnalysis.methodsToMakeStatic(clazz));
+            long engine = fastest(() -> engine(clazz));
+            baselineTotal += baseline;
+            engineTotal += engine;
+            System.out.printf("case %3d: %2d fields, %2d methods, %3d statements: baseline %9.1f us, engine %7.1f us, %6.1fx%n",
+                    i, generated.fields.size(), generated.methods.size(), generated.statements(),
+                    baseline / 1e3, engine / 1e3, (double) baseline / engine);
+        }
+        System.out.printf("%d cases: baseline %.1f ms, engine %.1f ms, %.1fx%n", CASES, baselineTotal / 1e6,
+                engineTotal / 1e6, (double) baselineTotal / engineTotal);
+    }
+
+    @Test
+    void shrinksToAMinimalReproducer() {
+        Random random = new Random(SEED);
+        GeneratedClass generated;
+        do {
+            generated = GeneratedClass.random(random);
+        } while (generated.methods.size() < 4 || !incrementsAField(generated));
+
+        GeneratedClass minimal = shrink(generated, DifferentialEquivalenceTest::incrementsAField);
+
+        assertThat(minimal.methods).hasSize(1);
+        assertThat(minimal.methods.get(0).body).hasSize(1);
+        assertThat(minimal.fields).hasSize(1);
+        assertThat(minimal.render()).contains("++");
+    }
+
+    private static boolean incrementsAField(GeneratedClass generated) {
+        for (GeneratedClass.Method method : generated.methods) {
+            for (GeneratedClass.Statement statement : method.body) {
+                if (statement.code.contains("++") && !statement.names.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private J.ClassDeclaration parse(GeneratedClass generated) {
+        parser.reset();
+        return parser.parse(new InMemoryExecutionContext(), generated.render()).get(0).getClasses().get(0);
+    }
+
+    private boolean disagree(GeneratedClass generated) {
+        J.ClassDeclaration clazz = parse(generated);
+        return !BaselineAnalysis.methodsToMakeStatic(clazz).equals(engine(clazz));
+    }
+
+    private static Set<String> engine(J.ClassDeclaration clazz) {
+        UsageAnalysis analysis = UsageAnalysis.analyze(clazz, false);
+        BitSet methodsToMakeStatic = MakeFalseInstanceMethodsStatic.propagateInstanceUsage(analysis, new TypeHierarchy(), false, null);
+
+        // without nested classes, ordinals are positions among the method declarations of the class
+        Set<String> names = new TreeSet<>();
+        int ordinal = 0;
+        for (J statement : clazz.getBody().getStatements()) {
+            if (statement instanceof J.MethodDeclaration && methodsToMakeStatic.get(ordinal++)) {
+                names.add(((J.MethodDeclaration) statement).getSimpleName());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return The fewest nanoseconds of a few runs, which is the least affected by collections and compilation.
+     */
+    private static long fastest(Supplier<?> analysis) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            analysis.get();
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return Math.max(fastest, 1);
+    }
+
+    /**
+     * Greedily takes the first simplification that still fails, until none does.
+     */
+    private static GeneratedClass shrink(GeneratedClass failing, Predicate<GeneratedClass> fails) {
+        GeneratedClass smallest = failing;
+        boolean shrunk = true;
+        while (shrunk) {
+            shrunk = false;
+            for (GeneratedClass simpler : smallest.simplifications()) {
+                if (fails.test(simpler)) {
+                    smallest = simpler;
+                    shrunk = true;
+                    break;
+                }
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * A class of int fields and void methods without parameters. Instance fields are named {@code f0, f1, ...},
+     * static fields {@code s0, s1, ...}, methods {@code m0, m1, ...} and locals {@code l0, l1, ...}. Static methods
+     * only use static fields and call static methods, so that every class compiles.
+     */
+    static final class GeneratedClass {
+        final List<Field> fields;
+        final List<Method> methods;
+
+        GeneratedClass(List<Field> fields, List<Method> methods) {
+            this.fields = fields;
+            this.methods = methods;
+        }
+
+        static final class Field {
+            final String name;
+            final String modifiers;
+            final boolean isStatic;
+            final boolean isFinal;
+
+            Field(String name, String modifiers, boolean isStatic, boolean isFinal) {
+                this.name = name;
+                this.modifiers = modifiers;
+                this.isStatic = isStatic;
+                this.isFinal = isFinal;
+            }
+        }
+
+        static final class Method {
+            final String name;
+            final String modifiers;
+            final boolean isStatic;
+            final List<Statement> body;
+
+            Method(String name, String modifiers, boolean isStatic, List<Statement> body) {
+                this.name = name;
+                this.modifiers = modifiers;
+                this.isStatic = isStatic;
+                this.body = body;
+            }
+
+            Method withBody(List<Statement> body) {
+                return new Method(name, modifiers, isStatic, body);
+            }
+        }
+
+        /**
+         * One or more lines of code, and the fields and methods they name.
+         */
+        static final class Statement {
+            final String code;
+            final Set<String> names;
+
+            Statement(String code, String... names) {
+                this.code = code;
+                this.names = new HashSet<>(Arrays.asList(names));
+            }
+        }
+
+        private static final String[] INSTANCE_FIELD_MODIFIERS = {"private", "", "protected", "private final"};
+        private static final String[] STATIC_FIELD_MODIFIERS = {"private static", "static"};
+        private static final String[] INSTANCE_METHOD_MODIFIERS = {"private", "private", "private final", "final",
+                "public final", "protected final", "public", "protected", ""};
+        private static final String[] STATIC_METHOD_MODIFIERS = {"private static", "static", "public static"};
+
+        static GeneratedClass random(Random random) {
+            List<Field> fields = new ArrayList<>();
+            int fieldCount = random.nextInt(7);
+            for (int i = 0; i < fieldCount; i++) {
+                if (random.nextInt(4) == 0) {
+                    fields.add(new Field("s" + i, pick(random, STATIC_FIELD_MODIFIERS), true, false));
+                } else {
+                    String modifiers = pick(random, INSTANCE_FIELD_MODIFIERS);
+                    fields.add(new Field("f" + i, modifiers, false, modifiers.contains("final")));
+                }
+            }
+
+            int methodCount = 1 + random.nextInt(random.nextInt(4) == 0 ? 40 : 12);
+            List<Method> methods = new ArrayList<>();
+            for (int i = 0; i < methodCount; i++) {
+                boolean isStatic = random.nextInt(5) == 0;
+                methods.add(new Method("m" + i, pick(random, isStatic ? STATIC_METHOD_MODIFIERS : INSTANCE_METHOD_MODIFIERS),
+                        isStatic, new ArrayList<>()));
+            }
+
+            int[] locals = {0};
+            for (Method method : methods) {
+                List<Field> readable = new ArrayList<>();
+                List<Field> writable = new ArrayList<>();
+                for (Field field : fields) {
+                    if (field.isStatic || !method.isStatic) {
+                        readable.add(field);
+                        if (!field.isFinal) {
+                            writable.add(field);
+                        }
+                    }
+                }
+                List<Method> callable = new ArrayList<>();
+                for (Method callee : methods) {
+                    if (callee.isStatic || !method.isStatic) {
+                        callable.add(callee);
+                    }
+                }
+                int statementCount = random.nextInt(6);
+                for (int i = 0; i < statementCount; i++) {
+                    method.body.add(statement(random, readable, writable, callable, locals));
+                }
+            }
+            return new GeneratedClass(fields, methods);
+        }
+
+        private static Statement statement(Random random, List<Field> readable, List<Field> writable,
+                                           List<Method> callable, int[] locals) {
+            int constant = 1 + random.nextInt(9);
+            String local = "l" + locals[0]++;
+            switch (random.nextInt(10)) {
+                case 0:
+                    if (!writable.isEmpty()) {
+                        String field = pick(random, writable).name;
+                        String[] increments = {field + "++;", field + "--;", "++" + field + ";", "--" + field + ";"};
+                        return new Statement(pick(random, increments), field);
+                    }
+                    break;
+                case 1:
+                    if (!writable.isEmpty()) {
+                        String field = pick(random, writable).name;
+                        String[] operators = {"+=", "-=", "*=", "|=", "<<="};
+                        return new Statement(field + " " + pick(random, operators) + " " + constant + ";", field);
+                    }
+                    break;
+                case 2:
+                    if (!writable.isEmpty()) {
+                        String field = pick(random, writable).name;
+                        if (!readable.isEmpty() && random.nextBoolean()) {
+                            String other = pick(random, readable).name;
+                            return new Statement(field + " = " + other + " + " + constant + ";", field, other);
+                        }
+                        return new Statement(field + " = " + constant + ";", field);
+                    }
+                    break;
+                case 3:
+                    if (!readable.isEmpty()) {
+                        String field = pick(random, readable).name;
+                        return new Statement("int " + local + " = " + field + " * " + constant + ";", field);
+                    }
+                    break;
+                case 4:
+                    if (!readable.isEmpty()) {
+                        String field = pick(random, readable).name;
+                        return new Statement("System.out.println(" + field + ");", field);
+                    }
+                    break;
+                case 5:
+                case 6:
+                case 7:
+                    if (!callable.isEmpty()) {
+                        String callee = pick(random, callable).name;
+                        return new Statement(callee + "();", callee);
+                    }
+                    break;
+                case 8:
+                    if (!readable.isEmpty() && !callable.isEmpty()) {
+                        String field = pick(random, readable).name;
+                        String callee = pick(random, callable).name;
+                        return new Statement("if (" + field + " > " + constant + ") {\n  " + callee + "();\n}", field, callee);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            // uses nothing of the class
+            return new Statement("int " + local + " = " + constant + ";\n" + local + " += " + local + ";");
+        }
+
+        private static <T> T pick(Random random, List<T> values) {
+            return values.get(random.nextInt(values.size()));
+        }
+
+        private static <T> T pick(Random random, T[] values) {
+            return values[random.nextInt(values.length)];
+        }
+
+        int statements() {
+            int statements = 0;
+            for (Method method : methods) {
+                statements += method.body.size();
+            }
+            return statements;
+        }
+
+        /**
+         * @return Smaller classes, from the largest step to the smallest: each without one method, without one field,
+         * and without one statement. Statements that name a removed member are removed with it.
+         */
+        List<GeneratedClass> simplifications() {
+            List<GeneratedClass> simplifications = new ArrayList<>();
+            for (int i = 0; i < methods.size(); i++) {
+                List<Method> remaining = new ArrayList<>(methods);
+                String removed = remaining.remove(i).name;
+                simplifications.add(new GeneratedClass(fields, withoutReferencesTo(remaining, removed)));
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                List<Field> remaining = new ArrayList<>(fields);
+                String removed = remaining.remove(i).name;
+                simplifications.add(new GeneratedClass(remaining, withoutReferencesTo(methods, removed)));
+            }
+            for (int i = 0; i < methods.size(); i++) {
+                for (int j = 0; j < methods.get(i).body.size(); j++) {
+                    List<Statement> body = new ArrayList<>(methods.get(i).body);
+                    body.remove(j);
+                    List<Method> remaining = new ArrayList<>(methods);
+                    remaining.set(i, methods.get(i).withBody(body));
+                    simplifications.add(new GeneratedClass(fields, remaining));
+                }
+            }
+            return simplifications;
+        }
+
+        private static List<Method> withoutReferencesTo(List<Method> methods, String name) {
+            List<Method> result = new ArrayList<>(methods.size());
+            for (Method method : methods) {
+                List<Statement> body = new ArrayList<>(method.body.size());
+                for (Statement statement : method.body) {
+                    if (!statement.names.contains(name)) {
+                        body.add(statement);
+                    }
+                }
+                result.add(method.withBody(body));
+            }
+            return result;
+        }
+
+        String render() {
+            StringBuilder source = new StringBuilder("class Generated {\n");
+            for (Field field : fields) {
+                source.append("  ").append(field.modifiers.isEmpty() ? "" : field.modifiers + " ")
+                        .append("int ").append(field.name).append(field.isFinal ? " = 1" : "").append(";\n");
+            }
+            for (Method method : methods) {
+                source.append("\n  ").append(method.modifiers.isEmpty() ? "" : method.modifiers + " ")
+                        .append("void ").append(method.name).append("() {\n");
+                for (Statement statement : method.body) {
+                    for (String line : statement.code.split("\n")) {
+                        source.append("    ").append(line).append('\n');
+                    }
+                }
+                source.append("  }\n");
+            }
+            return source.append("}\n").toString();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static java.util.Collections.emptySet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.openrewrite.java.Assertions.java;
+
+class MakeConstantInstanceFieldsStaticTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MakeConstantInstanceFieldsStatic());
+    }
+
+    @Test
+    void makesConstantAndImmutablyInitializedFieldsStatic() {
+        rewriteRun(
+            java("""
+                        import java.util.List;
+                        import java.util.logging.Logger;
+
+                        class Worker {
+                          private final int MAX = 64;
+                          private final int DOUBLE_MAX = MAX * 2;
+                          private final long timeout = Long.MAX_VALUE;
+                          private final Logger log = Logger.getLogger(Worker.class.getName());
+                          private final List<String> names = List.of("a", "b");
+                        }
+                    """,
+                """
+                        import java.util.List;
+                        import java.util.logging.Logger;
+
+                        class Worker {
+                          private static final int MAX = 64;
+                          private static final int DOUBLE_MAX = MAX * 2;
+                          private static final long timeout = Long.MAX_VALUE;
+                          private static final Logger log = Logger.getLogger(Worker.class.getName());
+                          private static final List<String> names = List.of("a", "b");
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesFieldsThatDependOnTheInstanceOrAreMutable() {
+        rewriteRun(
+            java("""
+                        import java.util.ArrayList;
+                        import java.util.List;
+                        import java.util.logging.Logger;
+
+                        class Worker {
+                          private int count = 1;
+                          private final int snapshot = count;
+                          private final Logger log = Logger.getLogger(getClass().getName());
+                          private final List<String> names = new ArrayList<>();
+                          private final int[] sizes = {1, 2};
+                          private final int later = LIMIT;
+                          private static final int LIMIT = 5;
+                          private final int assigned;
+
+                          Worker(int assigned) {
+                            this.assigned = assigned;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesReflectionSensitiveClassesAndFields() {
+        rewriteRun(
+            java("""
+                        import java.io.Serializable;
+
+                        class Snapshot implements Serializable {
+                          private final int version = 1;
+                        }
+                    """
+            ),
+            java("""
+                        @interface Bound {
+                        }
+                    """
+            ),
+            java("""
+                        @Bound
+                        class Entity {
+                          private final int version = 1;
+                        }
+                    """
+            ),
+            java("""
+                        class Injected {
+                          @Deprecated
+                          private final int annotated = 1;
+                          private final int lookedUp = 2;
+
+                          Object read() throws Exception {
+                            return Injected.class.getDeclaredField("lookedUp").get(this);
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesFieldsWhoseTypeUsesATypeParameter() {
+        rewriteRun(
+            java("""
+                        import java.util.Collections;
+                        import java.util.List;
+
+                        class Box<T> {
+                          private final List<T> items = Collections.emptyList();
+
+                          class Lid {
+                            private final List<T> covered = Collections.emptyList();
+                          }
+
+                          <E> Object local() {
+                            class Slot {
+                              private final List<E> slots = Collections.emptyList();
+                            }
+                            return new Slot();
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void onlyConstantsBecomeStaticInInnerClassesBeforeJava16() {
+        J.ClassDeclaration outer = JavaParser.fromJavaVersion().build().parse(new InMemoryExecutionContext(), """
+                    class Outer {
+                      private class Inner {
+                        private final int LIMIT = 10;
+                        private final Class<?> type = Inner.class;
+                      }
+                    }
+                """).get(0).getClasses().get(0);
+        UsageAnalysis.ClassUsage inner = UsageAnalysis.analyze(outer, false).getClasses().get(1);
+
+        assertThat(MakeConstantInstanceFieldsStatic.fieldsToMakeStatic(inner, new TypeHierarchy(), false, emptySet()))
+                .extracting(field -> field.getVariables().get(0).getSimpleName())
+                .containsExactly("LIMIT");
+        assertThat(MakeConstantInstanceFieldsStatic.fieldsToMakeStatic(inner, new TypeHierarchy(), true, emptySet()))
+                .extracting(field -> field.getVariables().get(0).getSimpleName())
+                .containsExactly("LIMIT", "type");
+    }
+
+    @Test
+    void letsMoreMethodsBecomeStatic() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeConstantInstanceFieldsStatic().doNext(new MakeFalseInstanceMethodsStatic())),
+            java("""
+                        class Buffer {
+                          private final int CAPACITY = 64;
+
+                          private int capacity() {
+                            return CAPACITY;
+                          }
+                        }
+                    """,
+                """
+                        class Buffer {
+                          private static final int CAPACITY = 64;
+
+                          private static int capacity() {
+                            return CAPACITY;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+}
@@ -0,0 +1,240 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import java.nio.file.Path;
+
+import static org.openrewrite.java.Assertions.java;
+
+class MakeFalseInstanceMethodsStaticAcrossFilesTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MakeFalseInstanceMethodsStaticAcrossFiles());
+    }
+
+    @Test
+    void makesPublicFinalMethodStaticAndCallsItThroughItsType() {
+        rewriteRun(
+            java("""
+                        package com.example;
+
+                        public class Calculator {
+                          private int total;
+
+                          public final int add(int value) {
+                            total += value;
+                            return total;
+                          }
+
+                          public final int twice(int value) {
+                            return value * 2;
+                          }
+                        }
+                    """,
+                """
+                        package com.example;
+
+                        public class Calculator {
+                          private int total;
+
+                          public final int add(int value) {
+                            total += value;
+                            return total;
+                          }
+
+                          public static final int twice(int value) {
+                            return value * 2;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        package com.example.client;
+
+                        import com.example.Calculator;
+
+                        class Client {
+                          private final Calculator calculator = new Calculator();
+
+                          int compute(Calculator other) {
+                            return calculator.add(1) + calculator.twice(2) + other.twice(3) + new Calculator().twice(4);
+                          }
+                        }
+                    """,
+                """
+                        package com.example.client;
+
+                        import com.example.Calculator;
+
+                        class Client {
+                          private final Calculator calculator = new Calculator();
+
+                          int compute(Calculator other) {
+                            return calculator.add(1) + Calculator.twice(2) + Calculator.twice(3) + new Calculator().twice(4);
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void givesTheSameResultWithAMemoryMappedIndex(@TempDir Path indexDirectory) {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStaticAcrossFiles(indexDirectory.toString())),
+            java("""
+                        package com.example;
+
+                        public class Greeter {
+                          public final String greet(String name) {
+                            return "Hello " + name;
+                          }
+                        }
+                    """,
+                """
+                        package com.example;
+
+                        public class Greeter {
+                          public static final String greet(String name) {
+                            return "Hello " + name;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        package com.example;
+
+                        class Client {
+                          String welcome(Greeter greeter) {
+                            return greeter.greet("world");
+                          }
+                        }
+                    """,
+                """
+                        package com.example;
+
+                        class Client {
+                          String welcome(Greeter greeter) {
+                            return Greeter.greet("world");
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesMethodsUsedThroughMethodReferences() {
+        rewriteRun(
+            java("""
+                        package com.example;
+
+                        public class Formatter {
+                          public final String format(Object value) {
+                            return String.valueOf(value);
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        package com.example;
+
+                        import java.util.List;
+                        import java.util.stream.Collectors;
+
+                        class Client {
+                          List<String> formatAll(Formatter formatter, List<Object> values) {
+                            return values.stream().map(formatter::format).collect(Collectors.toList());
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesMethodsLookedUpReflectively() {
+        rewriteRun(
+            java("""
+                        package com.example;
+
+                        public class Greeter {
+                          public final String greet() {
+                            return "hello";
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        package com.example;
+
+                        class Client {
+                          Object greet(Greeter greeter) throws Exception {
+                            return Greeter.class.getMethod("greet").invoke(greeter);
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesMethodsThatCallMethodsLeftAsInstanceMethods() {
+        rewriteRun(
+            java("""
+                        package com.example;
+
+                        public class Counter {
+                          public final int first() {
+                            return one();
+                          }
+
+                          private int one() {
+                            return 1;
+                          }
+
+                          public final int second() {
+                            return two();
+                          }
+
+                          public final int two() {
+                            return 2;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        package com.example;
+
+                        import java.util.function.IntSupplier;
+
+                        class Client {
+                          IntSupplier supplier(Counter counter) {
+                            return counter::two;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesFinalMethodsThatImplementInterfaces() {
+        rewriteRun(
+            java("""
+                        package com.example;
+
+                        public class Task implements Runnable {
+                          public final void run() {
+                            System.out.println("running");
+                          }
+                        }
+                    """
+            )
+        );
+    }
+}
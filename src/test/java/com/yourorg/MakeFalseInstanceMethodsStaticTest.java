@@ -1,9 +1,24 @@
 package com.yourorg;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+import org.openrewrite.java.tree.Statement;
 import org.openrewrite.test.RecipeSpec;
 import org.openrewrite.test.RewriteTest;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.openrewrite.java.Assertions.java;
 
 class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
@@ -13,7 +28,7 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
     //per test.
     @Override
     public void defaults(RecipeSpec spec) {
-        spec.recipe(new MakeFalseInstanceMethodsStatic()).expectedCyclesThatMakeChanges(2);
+        spec.recipe(new MakeFalseInstanceMethodsStatic());
     }
 
     @Test
@@ -64,20 +79,6 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
                             magicWord = value;
                           }
                         
-                        }
-                    """,
-                """
-                        class Test {
-                          private String magicWord;
-                        
-                          private String getMagicWord() {
-                            return magicWord;
-                          }
-                        
-                          private void setMagicWord(String value) {
-                            magicWord = value;
-                          }
-                        
                         }
                     """
             )
@@ -172,27 +173,6 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
                           
                           }
                         }
-                    """,
-                """
-                        class Test {
-                          private String instanceWord = "sdlkfj";
-                        
-                          private String getInstanceWord() {
-                            return instanceWord;
-                          }
-                          
-                          void method1() {
-                          
-                          }
-                          
-                          public void method2() {
-                          
-                          }
-                          
-                          protected void method3() {
-                          
-                          }
-                        }
                     """
             )
         );
@@ -227,32 +207,6 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
                             printPhrase();
                           }
                         }
-                    """,
-                """
-                        class Test {
-                          private String instanceWord;
-                        
-                          private String getInstanceWord() {
-                            return instanceWord;
-                          }
-                          
-                          private String setInstanceWord(String newWord) {
-                            instanceWord = newWord;
-                          }
-                          
-                          private String getPhrase() {
-                            return "something else"+getInstanceWord();
-                          }
-                          
-                          private void printPhrase() {
-                            System.out.println(getPhrase());
-                          }
-                          
-                          private void printBlock(String firstLine) {
-                            System.out.println(firstLine);
-                            printPhrase();
-                          }
-                        }
                     """
             )
         );
@@ -273,17 +227,33 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
                             staticWord = value;
                           }
                         }
-                    """,
-                """
-                        class Test {
-                          private static String staticWord;
-                        
-                          protected String getStaticWord() {
-                            return staticWord;
+                    """
+            )
+        );
+    }
+
+    @Test
+    void doesntModifyMethodsThatCallOverridableOrAbstractMethods() {
+        rewriteRun(
+            java("""
+                        abstract class Test {
+                          public void log(String message) {
+                            System.out.println(message);
                           }
-                        
-                          public void setStaticWord(String value) {
-                            staticWord = value;
+
+                          protected abstract String name();
+
+                          private void greet() {
+                            log("hello");
+                          }
+
+                          private String describe() {
+                            return "test " + name();
+                          }
+
+                          final void greetTwice() {
+                            greet();
+                            greet();
                           }
                         }
                     """
@@ -298,24 +268,6 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
                         import java.io.Serializable;
                         import java.io.*;
                         
-                        class Test implements Serializable {
-                           private void writeObject(ObjectOutputStream stream) throws IOException {
-                               
-                           }
-                       
-                           private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
-                               
-                           }
-                           
-                           private void readObjectNoData() throws ObjectStreamException {
-                           
-                           }
-                        }
-                    """,
-                """
-                        import java.io.Serializable;
-                        import java.io.*;
-                        
                         class Test implements Serializable {
                            private void writeObject(ObjectOutputStream stream) throws IOException {
                                
@@ -336,6 +288,35 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
 
     }
 
+    @Test
+    void doesntModifyExcludedMethodsOfIndirectlySerializableClasses() {
+        rewriteRun(
+            java("""
+                        import java.io.*;
+
+                        class Base implements java.io.Serializable {
+                          private void readObjectNoData() throws ObjectStreamException {
+                          }
+                        }
+
+                        class Derived extends Base {
+                          private void writeObject(ObjectOutputStream stream) throws IOException {
+                          }
+                        }
+
+                        class Event extends java.util.EventObject {
+                          Event() {
+                            super("source");
+                          }
+
+                          private void readObject(ObjectInputStream stream) throws IOException, ClassNotFoundException {
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
     @Test
     void doesntGetConfusedByMultipleClassDeclarationsInOneFile() {
         rewriteRun(
@@ -403,64 +384,1046 @@ class MakeFalseInstanceMethodsStaticTest implements RewriteTest {
 
     }
 
-// given more time would also be good to simulate an inherited class with methods that access instance data of the parent
+    @Test
+    void considersEveryVariableOfAMultiVariableDeclaration() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          private int first, second;
+                        
+                          private int getSecond() {
+                            return second;
+                          }
+                          
+                          private int bumpSecond() {
+                            return second++;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    @Timeout(value = 30, unit = TimeUnit.SECONDS)
+    void propagatesInstanceUsageThroughLongCallChains() {
+        // helper0 calls helper1 calls ... helper4999, which reads the field. declaring the chain against
+        // propagation order was the worst case of the old fixpoint loop.
+        int chainLength = 5_000;
+        StringBuilder before = new StringBuilder("class Test {\n    private int field;\n\n");
+        for (int i = 0; i < chainLength - 1; i++) {
+            before.append("    private int helper").append(i).append("() {\n        return helper").append(i + 1).append("();\n    }\n\n");
+        }
+        before.append("    private int helper").append(chainLength - 1).append("() {\n        return field;\n    }\n\n");
+        String after = before + "    private static int constant() {\n        return 42;\n    }\n}\n";
+        before.append("    private int constant() {\n        return 42;\n    }\n}\n");
+
+        rewriteRun(
+            java(before.toString(), after)
+        );
+    }
+
+    @Test
+    void localsShadowingFieldsDontBlockWithTypeAttribution() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(true)),
+            java("""
+                        class Test {
+                          private String word = "instance";
+                        
+                          private String getWord() {
+                            return word;
+                          }
+                          
+                          private String shout(String word) {
+                            return word.toUpperCase();
+                          }
+                          
+                          private int count() {
+                            int word = 0;
+                            word++;
+                            return word;
+                          }
+                          
+                          private String thisWord() {
+                            return this.word;
+                          }
+                        }
+                    """,
+                """
+                        class Test {
+                          private String word = "instance";
+                        
+                          private String getWord() {
+                            return word;
+                          }
+                          
+                          private static String shout(String word) {
+                            return word.toUpperCase();
+                          }
+                          
+                          private static int count() {
+                            int word = 0;
+                            word++;
+                            return word;
+                          }
+                          
+                          private String thisWord() {
+                            return this.word;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void callsToSameNamedMethodsOfOtherTypesDontBlockWithTypeAttribution() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(true)),
+            java("""
+                        import java.util.List;
+                        
+                        class Test {
+                          private int size;
+                        
+                          private int size() {
+                            return size;
+                          }
+                          
+                          private int sizeOf(List<String> list) {
+                            return list.size();
+                          }
+                          
+                          private int ownSize() {
+                            return size();
+                          }
+                        }
+                    """,
+                """
+                        import java.util.List;
+                        
+                        class Test {
+                          private int size;
+                        
+                          private int size() {
+                            return size;
+                          }
+                          
+                          private static int sizeOf(List<String> list) {
+                            return list.size();
+                          }
+                          
+                          private int ownSize() {
+                            return size();
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void parallelAnalysisKeepsClassesInSourceOrder() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withParallelThreshold(1)),
+            java("""
+                        class A {
+                            String word = "A";
+                            
+                            private String getWord() {
+                                return word;
+                            }
+                            
+                            private String getConstant() {
+                                return "A";
+                            }
+                        }
+                        
+                        class B {
+                            private String getConstant() {
+                                return "B";
+                            }
+                        }
+                        
+                        class C {
+                            String word = "C";
+                            
+                            private String getWord() {
+                                return word;
+                            }
+                        }
+                        
+                        class D {
+                            final String getConstant() {
+                                return "D";
+                            }
+                        }
+                    """,
+                """
+                        class A {
+                            String word = "A";
+                            
+                            private String getWord() {
+                                return word;
+                            }
+                            
+                            private static String getConstant() {
+                                return "A";
+                            }
+                        }
+                        
+                        class B {
+                            private static String getConstant() {
+                                return "B";
+                            }
+                        }
+                        
+                        class C {
+                            String word = "C";
+                            
+                            private String getWord() {
+                                return word;
+                            }
+                        }
+                        
+                        class D {
+                            final static String getConstant() {
+                                return "D";
+                            }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void reusesCachedVerdictsForUnchangedClasses(@TempDir Path cacheDirectory) {
+        MakeFalseInstanceMethodsStatic recipe = new MakeFalseInstanceMethodsStatic()
+                .withAnalysisCacheDirectory(cacheDirectory.toString());
+        String before = """
+                class Test {
+                  private String word = "instance";
+                
+                  private String getWord() {
+                    return word;
+                  }
+                  
+                  private String getConstant() {
+                    return "constant";
+                  }
+                }
+            """;
+        String after = """
+                class Test {
+                  private String word = "instance";
+                
+                  private String getWord() {
+                    return word;
+                  }
+                  
+                  private static String getConstant() {
+                    return "constant";
+                  }
+                }
+            """;
 
-// another edge case that i wasn't able to address yet vv
-//    @Test
-//    void checksNestedClassesAndMakesChangesIfAppropriate() {
-//        rewriteRun(
-//            java("""
-//                        class Test {
-//                          private static String magicWord = "magic";
-//
-//                          private String getMagicWord() {
-//                            return magicWord;
-//                          }
-//
-//                          private void setMagicWord(String value) {
-//                            magicWord = value;
-//                          }
-//
-//                          class NestedTest {
-//                              private static String boringWord = "boring";
-//
-//                              private String getBoringWord() {
-//                                return boringWord;
-//                              }
-//
-//                              private void setBoringWord(String value) {
-//                                boringWord = value;
-//                              }
-//                          }
-//
-//                        }
-//                    """,
-//                """
-//                        class Test {
-//                          private static String magicWord = "magic";
-//
-//                          private static String getMagicWord() {
-//                            return magicWord;
-//                          }
-//
-//                          private static void setMagicWord(String value) {
-//                            magicWord = value;
-//                          }
-//
-//                          class NestedTest {
-//                              private static String boringWord = "boring";
-//
-//                              private static String getBoringWord() {
-//                                return boringWord;
-//                              }
-//
-//                              private static void setBoringWord(String value) {
-//                                boringWord = value;
-//                              }
-//                          }
-//                        }
-//                    """
-//            )
-//        );
-//    }
+        rewriteRun(spec -> spec.recipe(recipe), java(before, after));
+        AnalysisCache cache = AnalysisCache.open(cacheDirectory, 100_000);
+        long hitsAfterFirstRun = cache.getHits();
+
+        rewriteRun(spec -> spec.recipe(recipe), java(before, after));
+        assertThat(cache.getHits()).isGreaterThan(hitsAfterFirstRun);
+    }
+
+    @Test
+    void doesntReuseCachedVerdictsOnceASupertypeBecomesSerializable(@TempDir Path cacheDirectory) {
+        MakeFalseInstanceMethodsStatic recipe = new MakeFalseInstanceMethodsStatic()
+                .withAnalysisCacheDirectory(cacheDirectory.toString());
+        String test = """
+                import java.io.IOException;
+                import java.io.ObjectOutputStream;
+
+                class Test extends Base {
+                  private void writeObject(ObjectOutputStream out) throws IOException {
+                    out.defaultWriteObject();
+                  }
+                }
+            """;
+
+        rewriteRun(
+            spec -> spec.recipe(recipe),
+            java("""
+                        class Base {
+                        }
+                    """
+            ),
+            java(test, test.replace("private void writeObject", "private static void writeObject"))
+        );
+        rewriteRun(
+            spec -> spec.recipe(recipe),
+            java("""
+                        class Base implements java.io.Serializable {
+                        }
+                    """
+            ),
+            java(test)
+        );
+    }
+
+    @Test
+    void skipsFilesWithoutCandidateMethods() {
+        rewriteRun(
+            java("""
+                        interface Greeter {
+                          String greet(String name);
+                        
+                          default String greetWorld() {
+                            return greet("world");
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Constants {
+                          private static String getConstant() {
+                            return "constant";
+                          }
+                          
+                          public String getGreeting() {
+                            return "hello";
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void reportsRunStatisticsPerFile() {
+        rewriteRun(
+            spec -> spec.dataTable(FalseInstanceMethodStatistics.Row.class, rows -> {
+                // only the cycle that made the change reports the file, not the later ones
+                assertThat(rows).extracting(FalseInstanceMethodStatistics.Row::getSourcePath).containsExactly("Test.java");
+                FalseInstanceMethodStatistics.Row row = rows.get(0);
+                assertThat(row.getClasses()).isEqualTo(2);
+                assertThat(row.getMethods()).isEqualTo(3);
+                assertThat(row.getInstanceFields()).isEqualTo(1);
+                assertThat(row.getReferenceScanVisits()).isPositive();
+                assertThat(row.getFixpointIterations()).isEqualTo(2);
+                assertThat(row.getMethodsMadeStatic()).isEqualTo(1);
+            }),
+            java("""
+                        class Test {
+                          private String word;
+                        
+                          private String getWord() {
+                            return word;
+                          }
+                          
+                          private String getWordTwice() {
+                            return getWord() + getWord();
+                          }
+                          
+                          static class Nested {
+                            private String getConstant() {
+                              return "constant";
+                            }
+                          }
+                        }
+                    """,
+                """
+                        class Test {
+                          private String word;
+                        
+                          private String getWord() {
+                            return word;
+                          }
+                          
+                          private String getWordTwice() {
+                            return getWord() + getWord();
+                          }
+                          
+                          static class Nested {
+                            private static String getConstant() {
+                              return "constant";
+                            }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void lambdasAndMethodReferencesStopCapturingThis() {
+        rewriteRun(
+            spec -> spec.dataTable(FalseInstanceMethodStatistics.Row.class, rows -> {
+                assertThat(rows).hasSize(1);
+                assertThat(rows.get(0).getAllocationSitesRemoved()).isEqualTo(2);
+            }),
+            java("""
+                        import java.util.List;
+                        import java.util.stream.Collectors;
+
+                        class Test {
+                          private String suffix = "!";
+
+                          private String decorate(String item) {
+                            return "[" + item + "]";
+                          }
+
+                          List<String> decorateAll(List<String> items) {
+                            items.forEach(item -> System.out.println(this.decorate(item)));
+                            return items.stream()
+                                    .map(this::decorate)
+                                    .map(item -> decorate(item) + suffix)
+                                    .collect(Collectors.toList());
+                          }
+                        }
+                    """,
+                """
+                        import java.util.List;
+                        import java.util.stream.Collectors;
+
+                        class Test {
+                          private String suffix = "!";
+
+                          private static String decorate(String item) {
+                            return "[" + item + "]";
+                          }
+
+                          List<String> decorateAll(List<String> items) {
+                            items.forEach(item -> System.out.println(decorate(item)));
+                            return items.stream()
+                                    .map(Test::decorate)
+                                    .map(item -> decorate(item) + suffix)
+                                    .collect(Collectors.toList());
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesMethodsThatUseInheritedInstanceMembers() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(true)),
+            java("""
+                        class Base {
+                          protected int count;
+
+                          protected void reset() {
+                            count = 0;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Sub extends Base {
+                          private int read() {
+                            return count;
+                          }
+
+                          private void clear() {
+                            reset();
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesMethodsNamedByMethodReferencesWithOtherReceivers() {
+        String source = """
+                    import java.util.List;
+                    import java.util.stream.Collectors;
+
+                    class Test {
+                      private Test next;
+
+                      private String format(String item) {
+                        return item.trim();
+                      }
+
+                      private String label(String item) {
+                        return "<" + item + ">";
+                      }
+
+                      List<String> formatAll(List<String> items) {
+                        return items.stream().map(next::format).collect(Collectors.toList());
+                      }
+
+                      class View {
+                        List<String> labelAll(List<String> items) {
+                          return items.stream().map(Test.this::label).collect(Collectors.toList());
+                        }
+                      }
+                    }
+                """;
+        rewriteRun(java(source));
+        rewriteRun(spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withUseTypeAttribution(true)), java(source));
+    }
+
+    @Test
+    void analysisOnlyReportsWhatBlocksEachCandidate() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withAnalysisOnly(true))
+                .dataTable(StaticMethodCandidates.Row.class, rows -> assertThat(rows).containsExactly(
+                    new StaticMethodCandidates.Row("Test.java", "Test", "getWord()", "private", "reads field word"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "setWord(String)", "private", "writes field word"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "getWordTwice()", "private", "calls instance method getWord"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "newEntry()", "private", "instantiates inner class Entry"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "self()", "protected", "uses this or an enclosing instance"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "join(int, String...)", "public", "")
+                )),
+            java("""
+                        class Test {
+                          private String word;
+
+                          private String getWord() {
+                            return word;
+                          }
+
+                          private void setWord(String value) {
+                            word = value;
+                          }
+
+                          private String getWordTwice() {
+                            return getWord() + getWord();
+                          }
+
+                          private Object newEntry() {
+                            return new Entry();
+                          }
+
+                          protected final Object self() {
+                            return this;
+                          }
+
+                          public final String join(int times, String... parts) {
+                            return String.join(",", parts).repeat(times);
+                          }
+
+                          void notACandidate() {
+                          }
+
+                          private class Entry {
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void analysisOnlyReportsNegatedFieldsAsReads() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withAnalysisOnly(true))
+                .dataTable(StaticMethodCandidates.Row.class, rows -> assertThat(rows).containsExactly(
+                    new StaticMethodCandidates.Row("Test.java", "Test", "isDisabled()", "private", "reads field enabled"),
+                    new StaticMethodCandidates.Row("Test.java", "Test", "inverted()", "private", "reads field mask")
+                )),
+            java("""
+                        class Test {
+                          private boolean enabled;
+                          private int mask;
+
+                          private boolean isDisabled() {
+                            return !enabled;
+                          }
+
+                          private int inverted() {
+                            return ~mask;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void skipsFilesThatExceedTheWorkBudget() {
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withMaxWorkPerFile(20))
+                .dataTable(SkippedSourceFiles.Row.class, rows -> assertThat(rows).containsExactly(
+                    new SkippedSourceFiles.Row("Large.java", 1, 3, 20)
+                )),
+            java("""
+                        class Large {
+                          private int count;
+
+                          private int next() {
+                            return ++count;
+                          }
+
+                          private String describe(String prefix, String suffix) {
+                            return prefix + ":" + suffix;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Small {
+                          private void run() {
+                          }
+                        }
+                    """,
+                """
+                        class Small {
+                          private static void run() {
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void skipsTheSameFilesWhenVerdictsAreCached(@TempDir Path cacheDirectory) {
+        String source = """
+                class First {
+                  private void run() {
+                  }
+                }
+
+                class Second {
+                  private void run() {
+                  }
+                }
+            """;
+        J.ClassDeclaration first = JavaParser.fromJavaVersion().build()
+                .parse(new InMemoryExecutionContext(), source).get(0).getClasses().get(0);
+        // enough for either class, but not for both
+        int budget = (int) (2 * UsageAnalysis.analyze(first, false).visits - 1);
+        MakeFalseInstanceMethodsStatic recipe = new MakeFalseInstanceMethodsStatic()
+                .withAnalysisCacheDirectory(cacheDirectory.toString())
+                .withMaxWorkPerFile(budget);
+
+        for (int run = 0; run < 2; run++) {
+            rewriteRun(
+                spec -> spec.recipe(recipe)
+                    .dataTable(SkippedSourceFiles.Row.class, rows -> assertThat(rows).containsExactly(
+                        new SkippedSourceFiles.Row("First.java", 2, 2, budget)
+                    )),
+                java(source)
+            );
+        }
+    }
+
+    @Test
+    void onlyAnalyzesChangedFilesAndTheirSubclasses(@TempDir Path directory) throws IOException {
+        Path changedPaths = Files.write(directory.resolve("changed.txt"), Arrays.asList("Changed.java", "Base.java"));
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withChangedPathsFile(changedPaths.toString())),
+            java("""
+                        class Changed {
+                          private int zero() {
+                            return 0;
+                          }
+                        }
+                    """,
+                """
+                        class Changed {
+                          private static int zero() {
+                            return 0;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Unchanged {
+                          private int zero() {
+                            return 0;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Base implements java.io.Serializable {
+                        }
+                    """
+            ),
+            java("""
+                        import java.io.*;
+
+                        class Derived extends Base {
+                          private void writeObject(ObjectOutputStream stream) throws IOException {
+                          }
+
+                          private int zero() {
+                            return 0;
+                          }
+                        }
+                    """,
+                """
+                        import java.io.*;
+
+                        class Derived extends Base {
+                          private void writeObject(ObjectOutputStream stream) throws IOException {
+                          }
+
+                          private static int zero() {
+                            return 0;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void matchesChangedPathsExactlyAndChecksNestedClasses(@TempDir Path directory) throws IOException {
+        Path changedPaths = Files.write(directory.resolve("changed.txt"), Arrays.asList("module/Changed.java", "./Base.java"));
+        rewriteRun(
+            spec -> spec.recipe(new MakeFalseInstanceMethodsStatic().withChangedPathsFile(changedPaths.toString())),
+            java("""
+                        class Changed {
+                          private int zero() {
+                            return 0;
+                          }
+                        }
+                    """
+            ),
+            java("""
+                        class Base {
+                        }
+                    """
+            ),
+            java("""
+                        class Outer {
+                          static class Derived extends Base {
+                            private int zero() {
+                              return 0;
+                            }
+                          }
+                        }
+                    """,
+                """
+                        class Outer {
+                          static class Derived extends Base {
+                            private static int zero() {
+                              return 0;
+                            }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void returnsTheSameTreeWhenNothingChanges() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        J.CompilationUnit cu = JavaParser.fromJavaVersion().build().parse(ctx, """
+                    class Test {
+                      private String word;
+                    
+                      private String getWord() {
+                        return word;
+                      }
+                      
+                      private static String getConstant() {
+                        return "constant";
+                      }
+                    }
+                """).get(0);
+
+        assertThat(new MakeFalseInstanceMethodsStatic().getVisitor().visit(cu, ctx)).isSameAs(cu);
+    }
+
+    @Test
+    void sharesUnchangedClassesAndMethods() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        J.CompilationUnit cu = JavaParser.fromJavaVersion().build().parse(ctx, """
+                    class A {
+                      private String word;
+                    
+                      private String getWord() {
+                        return word;
+                      }
+                    }
+                    
+                    class B {
+                      private String word;
+                    
+                      private String getWord() {
+                        return word;
+                      }
+                      
+                      private String getConstant() {
+                        return "constant";
+                      }
+                    }
+                """).get(0);
+
+        J.CompilationUnit after = (J.CompilationUnit) new MakeFalseInstanceMethodsStatic().getVisitor().visit(cu, ctx);
+        assertThat(after).isNotSameAs(cu);
+        assertThat(after.getClasses().get(0)).isSameAs(cu.getClasses().get(0));
+
+        List<Statement> beforeStatements = cu.getClasses().get(1).getBody().getStatements();
+        List<Statement> afterStatements = after.getClasses().get(1).getBody().getStatements();
+        assertThat(afterStatements.get(0)).isSameAs(beforeStatements.get(0));
+        assertThat(afterStatements.get(1)).isSameAs(beforeStatements.get(1));
+        assertThat(afterStatements.get(2)).isNotSameAs(beforeStatements.get(2));
+        assertThat(((J.MethodDeclaration) beforeStatements.get(2)).hasModifier(J.Modifier.Type.Static)).isFalse();
+    }
+
+// given more time would also be good to simulate an inherited class with methods that access instance data of the parent
+
+    @Test
+    void checksNestedClassesAndMakesChangesIfAppropriate() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          private static String magicWord = "magic";
+
+                          private String getMagicWord() {
+                            return magicWord;
+                          }
+
+                          private void setMagicWord(String value) {
+                            magicWord = value;
+                          }
+
+                          static class NestedTest {
+                              private static String boringWord = "boring";
+
+                              private String getBoringWord() {
+                                return boringWord;
+                              }
+
+                              private void setBoringWord(String value) {
+                                boringWord = value;
+                              }
+                          }
+                        }
+                    """,
+                """
+                        class Test {
+                          private static String magicWord = "magic";
+
+                          private static String getMagicWord() {
+                            return magicWord;
+                          }
+
+                          private static void setMagicWord(String value) {
+                            magicWord = value;
+                          }
+
+                          static class NestedTest {
+                              private static String boringWord = "boring";
+
+                              private static String getBoringWord() {
+                                return boringWord;
+                              }
+
+                              private static void setBoringWord(String value) {
+                                boringWord = value;
+                              }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void nestedClassFieldsDontBlockMethodsOfTheOuterClass() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          private String getName() {
+                            return "outer";
+                          }
+
+                          static class Builder {
+                            private String name;
+
+                            private Builder name(String name) {
+                              this.name = name;
+                              return this;
+                            }
+
+                            private String getDefaultName() {
+                              return "builder";
+                            }
+                          }
+                        }
+                    """,
+                """
+                        class Outer {
+                          private static String getName() {
+                            return "outer";
+                          }
+
+                          static class Builder {
+                            private String name;
+
+                            private Builder name(String name) {
+                              this.name = name;
+                              return this;
+                            }
+
+                            private static String getDefaultName() {
+                              return "builder";
+                            }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void anonymousClassUsingOuterInstanceFieldBlocksEnclosingMethod() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          private String word = "word";
+
+                          private Runnable printer() {
+                            return new Runnable() {
+                              @Override
+                              public void run() {
+                                System.out.println(word);
+                              }
+                            };
+                          }
+
+                          private Runnable greeter() {
+                            return new Runnable() {
+                              @Override
+                              public void run() {
+                                System.out.println("hello");
+                              }
+                            };
+                          }
+                        }
+                    """,
+                """
+                        class Test {
+                          private String word = "word";
+
+                          private Runnable printer() {
+                            return new Runnable() {
+                              @Override
+                              public void run() {
+                                System.out.println(word);
+                              }
+                            };
+                          }
+
+                          private static Runnable greeter() {
+                            return new Runnable() {
+                              @Override
+                              public void run() {
+                                System.out.println("hello");
+                              }
+                            };
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void qualifiedThisBlocksEnclosingMethods() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          private Object self() {
+                            class Local {
+                              private Object outer() {
+                                return Outer.this;
+                              }
+                            }
+                            return new Local().outer();
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void methodsOfLocalClassesThatUseNoStateBecomeStatic() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          private int count = 0;
+
+                          private int next() {
+                            class Counter {
+                              private int value;
+
+                              private int increment() {
+                                return ++value;
+                              }
+
+                              private int zero() {
+                                return 0;
+                              }
+                            }
+                            return count + new Counter().increment();
+                          }
+                        }
+                    """,
+                """
+                        class Test {
+                          private int count = 0;
+
+                          private int next() {
+                            class Counter {
+                              private int value;
+
+                              private int increment() {
+                                return ++value;
+                              }
+
+                              private static int zero() {
+                                return 0;
+                              }
+                            }
+                            return count + new Counter().increment();
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void passingThisBlocksTheMethod() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          private void register(java.util.List<Object> registry) {
+                            registry.add(this);
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void instantiatingAnInnerClassRequiresAnInstance() {
+        rewriteRun(
+            java("""
+                        class Test {
+                          class Inner {
+                          }
+
+                          private Inner newInner() {
+                            return new Inner();
+                          }
+                        }
+                    """
+            )
+        );
+    }
 }
@@ -0,0 +1,302 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import static org.openrewrite.java.Assertions.java;
+
+class MakeInnerClassesStaticTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MakeInnerClassesStatic());
+    }
+
+    @Test
+    void makesInnerClassThatUsesNoEnclosingInstanceStatic() {
+        rewriteRun(
+            java("""
+                        class Cache {
+                          private int hits;
+
+                          private class Entry {
+                            private final String key;
+
+                            Entry(String key) {
+                              this.key = key;
+                            }
+
+                            String describe() {
+                              return "entry " + key;
+                            }
+                          }
+
+                          class Visible {
+                          }
+                        }
+                    """,
+                """
+                        class Cache {
+                          private int hits;
+
+                          private static class Entry {
+                            private final String key;
+
+                            Entry(String key) {
+                              this.key = key;
+                            }
+
+                            String describe() {
+                              return "entry " + key;
+                            }
+                          }
+
+                          class Visible {
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesInnerClassesThatUseTheEnclosingInstance() {
+        rewriteRun(
+            java("""
+                        class Listeners {
+                          private int count;
+
+                          private class CountingListener {
+                            void fire() {
+                              count++;
+                            }
+                          }
+
+                          private class InitializedFromOuter {
+                            private final int snapshot = count;
+                          }
+
+                          private class ConstructedFromOuter {
+                            ConstructedFromOuter() {
+                              System.out.println(Listeners.this);
+                            }
+                          }
+
+                          private class CallsOuterMethod {
+                            int get() {
+                              return size();
+                            }
+                          }
+
+                          private int size() {
+                            return count;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void considersEveryNestingLevel() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          private int state;
+
+                          private class Middle {
+                            private int middleState;
+
+                            private class UsesMiddle {
+                              int read() {
+                                return middleState;
+                              }
+                            }
+
+                            private class UsesNothing {
+                              int constant() {
+                                return 42;
+                              }
+                            }
+                          }
+
+                          private class UsesOuterThroughNested {
+                            private class Deepest {
+                              int read() {
+                                return state;
+                              }
+                            }
+                          }
+                        }
+                    """,
+                """
+                        class Outer {
+                          private int state;
+
+                          private static class Middle {
+                            private int middleState;
+
+                            private class UsesMiddle {
+                              int read() {
+                                return middleState;
+                              }
+                            }
+
+                            private static class UsesNothing {
+                              int constant() {
+                                return 42;
+                              }
+                            }
+                          }
+
+                          private class UsesOuterThroughNested {
+                            private class Deepest {
+                              int read() {
+                                return state;
+                              }
+                            }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesClassesThatAnotherClassConstructsThroughAnExplicitInstance() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          private class Inner {
+                          }
+
+                          private class Base {
+                          }
+
+                          static Object create(Outer outer) {
+                            return outer.new Inner();
+                          }
+
+                          private static class Derived extends Base {
+                            Derived(Outer outer) {
+                              outer.super();
+                            }
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void makesSubclassStaticOnlyOnceItsSuperclassIs() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          private int state;
+
+                          private class Derived extends Base {
+                          }
+
+                          private class Base {
+                          }
+
+                          private class NeedsOuter {
+                            int read() {
+                              return state;
+                            }
+                          }
+
+                          private class ExtendsInner extends NeedsOuter {
+                          }
+
+                          Object anonymous() {
+                            return new Base() {
+                              @Override
+                              public String toString() {
+                                return "anonymous " + state;
+                              }
+                            };
+                          }
+                        }
+                    """,
+                """
+                        class Outer {
+                          private int state;
+
+                          private static class Derived extends Base {
+                          }
+
+                          private static class Base {
+                          }
+
+                          private class NeedsOuter {
+                            int read() {
+                              return state;
+                            }
+                          }
+
+                          private class ExtendsInner extends NeedsOuter {
+                          }
+
+                          Object anonymous() {
+                            return new Base() {
+                              @Override
+                              public String toString() {
+                                return "anonymous " + state;
+                              }
+                            };
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void leavesSerializableAndGenericInnerClasses() {
+        rewriteRun(
+            java("""
+                        import java.io.Serializable;
+
+                        class Outer<T> {
+                          private class Snapshot implements Serializable {
+                          }
+
+                          private class Holder {
+                            T value;
+                          }
+                        }
+                    """
+            )
+        );
+    }
+
+    @Test
+    void keepsModifierOrderAndFormatting() {
+        rewriteRun(
+            java("""
+                        class Outer {
+                          @Deprecated
+                          private final class Annotated {
+                          }
+
+                          private abstract class Template {
+                          }
+                        }
+                    """,
+                """
+                        class Outer {
+                          @Deprecated
+                          private static final class Annotated {
+                          }
+
+                          private abstract static class Template {
+                          }
+                        }
+                    """
+            )
+        );
+    }
+}
@@ -0,0 +1,91 @@
+package com.yourorg;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openrewrite.test.RecipeSpec;
+import org.openrewrite.test.RewriteTest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.openrewrite.java.Assertions.java;
+
+class PhaseEventsTest implements RewriteTest {
+
+    @Override
+    public void defaults(RecipeSpec spec) {
+        spec.recipe(new MakeFalseInstanceMethodsStatic());
+    }
+
+    @Test
+    void eventsAreDisabledByDefault() {
+        for (int phase : new int[]{PhaseEvents.MEMBER_COLLECTION, PhaseEvents.REFERENCE_SCAN, PhaseEvents.PROPAGATION,
+                PhaseEvents.REWRITE}) {
+            assertThat(PhaseEvents.begin(phase)).isNull();
+        }
+    }
+
+    @Test
+    void recordsEachPhase(@TempDir Path directory) throws IOException {
+        Path dump = directory.resolve("phases.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[]{"MemberCollection", "ReferenceScan", "Propagation", "Rewrite"}) {
+                recording.enable("com.yourorg." + name).withoutThreshold();
+            }
+            recording.start();
+            rewriteRun(
+                java("""
+                            class Test {
+                              private int count;
+
+                              private String greet(String name) {
+                                return "Hello " + name;
+                              }
+
+                              private int next() {
+                                return ++count;
+                              }
+                            }
+                        """,
+                        """
+                            class Test {
+                              private int count;
+
+                              private static String greet(String name) {
+                                return "Hello " + name;
+                              }
+
+                              private int next() {
+                                return ++count;
+                              }
+                            }
+                        """
+                )
+            );
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.yourorg.MemberCollection"))
+                .extracting(e -> e.getString("className"), e -> e.getLong("elements"))
+                .contains(tuple("Test", 3L));
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.yourorg.ReferenceScan"))
+                .allSatisfy(e -> {
+                    assertThat(e.getString("sourcePath")).isEqualTo("Test.java");
+                    assertThat(e.getString("className")).isEqualTo("Test");
+                    assertThat(e.getLong("elements")).isPositive();
+                })
+                .isNotEmpty();
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.yourorg.Propagation")).isNotEmpty();
+        assertThat(events).filteredOn(e -> e.getEventType().getName().equals("com.yourorg.Rewrite"))
+                .extracting(e -> e.getLong("elements"))
+                .contains(1L);
+    }
+}
@@ -0,0 +1,83 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SymbolTableTest {
+
+    @TempDir
+    Path directory;
+
+    private SymbolTable open(boolean memoryMapped) {
+        return memoryMapped ? SymbolTable.memoryMapped(directory) : SymbolTable.onHeap();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void internsKeysAcrossGrowthAndRehashing(boolean memoryMapped) {
+        // enough keys to grow every region and rehash several times
+        int keys = 20_000;
+        try (SymbolTable symbols = open(memoryMapped)) {
+            for (int i = 0; i < keys; i++) {
+                assertThat(symbols.intern("com.example.Type" + i + "#método(int)")).isEqualTo(i);
+            }
+            assertThat(symbols.size()).isEqualTo(keys);
+            assertThat(symbols.intern("com.example.Type7#método(int)")).isEqualTo(7);
+            assertThat(symbols.find("com.example.Type19999#método(int)")).isEqualTo(19_999);
+            assertThat(symbols.find("com.example.Type20000#método(int)")).isEqualTo(-1);
+            assertThat(symbols.key(12_345)).isEqualTo("com.example.Type12345#método(int)");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void keepsFlagsAssociationsAndReferencesPerKey(boolean memoryMapped) {
+        try (SymbolTable symbols = open(memoryMapped)) {
+            int method = symbols.intern("Mcom.example.Greeter#greet()");
+            int declaringFile = symbols.intern("Fsrc/Greeter.java");
+            int callingFile = symbols.intern("Fsrc/Client.java");
+
+            assertThat(symbols.flags(method)).isZero();
+            assertThat(symbols.associated(method)).isEqualTo(-1);
+
+            symbols.addFlags(method, 1);
+            symbols.addFlags(method, 4);
+            symbols.associate(method, declaringFile);
+            for (int i = 0; i < 1_000; i++) {
+                symbols.addReference(method, callingFile);
+            }
+            symbols.addReference(method, declaringFile);
+
+            assertThat(symbols.flags(method)).isEqualTo(5);
+            assertThat(symbols.flags(callingFile)).isZero();
+            assertThat(symbols.associated(method)).isEqualTo(declaringFile);
+
+            List<Integer> references = new ArrayList<>();
+            symbols.forEachReference(method, references::add);
+            assertThat(references).hasSize(1_001).startsWith(declaringFile).endsWith(callingFile);
+
+            List<Integer> none = new ArrayList<>();
+            symbols.forEachReference(callingFile, none::add);
+            assertThat(none).isEmpty();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void deletesItsFilesOnClose(boolean memoryMapped) throws IOException {
+        open(memoryMapped).close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+}
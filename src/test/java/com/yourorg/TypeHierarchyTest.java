@@ -0,0 +1,58 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypeHierarchyTest {
+
+    @Test
+    void resolvesContractsAndInheritedMethodsThroughEverySupertype() {
+        List<J.ClassDeclaration> classes = JavaParser.fromJavaVersion().build().parse(new InMemoryExecutionContext(), """
+                    import java.util.ArrayList;
+
+                    interface Named {
+                      String name();
+                    }
+
+                    abstract class Base<T> extends ArrayList<T> implements Named {
+                    }
+
+                    class Derived extends Base<String> {
+                      public final String name() {
+                        return "derived";
+                      }
+
+                      final String other() {
+                        return "other";
+                      }
+                    }
+                """).get(0).getClasses();
+        J.ClassDeclaration derived = classes.get(2);
+        TypeHierarchy hierarchy = new TypeHierarchy();
+
+        assertThat(hierarchy.isAssignableTo("java.io.Serializable", derived.getType())).isTrue();
+        assertThat(hierarchy.isAssignableTo("Named", derived.getType())).isTrue();
+        assertThat(hierarchy.isAssignableTo("java.lang.Comparable", derived.getType())).isFalse();
+        assertThat(hierarchy.isAssignableTo("java.io.Serializable", classes.get(0).getType())).isFalse();
+        assertThat(hierarchy.isAssignableTo("java.io.Serializable", null)).isFalse();
+
+        J.MethodDeclaration name = (J.MethodDeclaration) derived.getBody().getStatements().get(0);
+        J.MethodDeclaration other = (J.MethodDeclaration) derived.getBody().getStatements().get(1);
+        assertThat(hierarchy.isDeclaredInSupertype(name.getMethodType())).isTrue();
+        assertThat(hierarchy.isDeclaredInSupertype(other.getMethodType())).isFalse();
+    }
+
+    @Test
+    void isSharedByEveryRecipeOfARun() {
+        ExecutionContext ctx = new InMemoryExecutionContext();
+        assertThat(TypeHierarchy.of(ctx)).isSameAs(TypeHierarchy.of(ctx));
+        assertThat(TypeHierarchy.of(ctx)).isNotSameAs(TypeHierarchy.of(new InMemoryExecutionContext()));
+    }
+}
@@ -0,0 +1,166 @@
+package com.yourorg;
+
+import org.junit.jupiter.api.Test;
+import org.openrewrite.ExecutionContext;
+import org.openrewrite.InMemoryExecutionContext;
+import org.openrewrite.java.JavaParser;
+import org.openrewrite.java.tree.J;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UsageAnalysisTest {
+
+    private static J.ClassDeclaration parse(String source) {
+        return JavaParser.fromJavaVersion().build()
+                .parse(new InMemoryExecutionContext(), source)
+                .get(0).getClasses().get(0);
+    }
+
+    @Test
+    void recordsReadsWritesAndCallsPerMethod() {
+        J.ClassDeclaration clazz = parse("""
+                    class Test {
+                      private int count;
+                      private String name;
+
+                      private void increment() {
+                        count++;
+                        log(name);
+                      }
+
+                      private void log(String message) {
+                        System.out.println(message);
+                      }
+                    }
+                """);
+
+        UsageAnalysis.ClassUsage test = UsageAnalysis.of(clazz, false, new InMemoryExecutionContext()).getClasses().get(0);
+        assertThat(test.getInstanceVariables()).containsExactly("count", "name");
+
+        UsageAnalysis.MethodUsage increment = test.getMethods().get(0);
+        assertThat(increment.getWrites()).containsExactly("count");
+        assertThat(increment.getReads()).containsExactly("name");
+        assertThat(increment.getCalls()).containsExactly("log");
+        assertThat(increment.usesThis()).isFalse();
+
+        UsageAnalysis.MethodUsage log = test.getMethods().get(1);
+        assertThat(log.getReads()).isEmpty();
+        assertThat(log.getCalls()).isEmpty();
+    }
+
+    @Test
+    void onlyIncrementsAndDecrementsWriteTheirOperand() {
+        J.ClassDeclaration clazz = parse("""
+                    class Test {
+                      private boolean flag;
+                      private int count;
+                      private int mask;
+
+                      private boolean check() {
+                        return !flag && -count < ~mask;
+                      }
+
+                      private void step() {
+                        count++;
+                        --mask;
+                      }
+                    }
+                """);
+
+        UsageAnalysis.ClassUsage test = UsageAnalysis.of(clazz, false, new InMemoryExecutionContext()).getClasses().get(0);
+        UsageAnalysis.MethodUsage check = test.getMethods().get(0);
+        assertThat(check.getReads()).containsExactly("flag", "count", "mask");
+        assertThat(check.getWrites()).isEmpty();
+
+        UsageAnalysis.MethodUsage step = test.getMethods().get(1);
+        assertThat(step.getWrites()).containsExactly("count", "mask");
+    }
+
+    @Test
+    void inheritedInstanceMembersUseThisWhenTypeAttributed() {
+        J.ClassDeclaration sub = JavaParser.fromJavaVersion().build().parse(new InMemoryExecutionContext(), """
+                    class Base {
+                      protected int count;
+                      protected static int total;
+
+                      protected void touch() {
+                      }
+                    }
+
+                    class Sub extends Base {
+                      private int read() {
+                        return count;
+                      }
+
+                      private void write() {
+                        count = 1;
+                      }
+
+                      private void call() {
+                        touch();
+                      }
+
+                      private int readStatic() {
+                        return total;
+                      }
+                    }
+                """).get(0).getClasses().get(1);
+
+        UsageAnalysis.ClassUsage typed = UsageAnalysis.of(sub, true, new InMemoryExecutionContext()).getClasses().get(0);
+        assertThat(typed.getMethods())
+                .extracting(UsageAnalysis.MethodUsage::usesThis)
+                .containsExactly(true, true, true, false);
+    }
+
+    @Test
+    void attributesReferencesFromAnonymousClassesToTheEnclosingMethod() {
+        J.ClassDeclaration clazz = parse("""
+                    class Test {
+                      private String word;
+
+                      private Runnable printer() {
+                        return new Runnable() {
+                          @Override
+                          public void run() {
+                            System.out.println(word);
+                          }
+                        };
+                      }
+                    }
+                """);
+
+        UsageAnalysis analysis = UsageAnalysis.of(clazz, false, new InMemoryExecutionContext());
+        assertThat(analysis.getClasses()).hasSize(2);
+        assertThat(analysis.getClasses().get(0).getMethods().get(0).getReads()).containsExactly("word");
+
+        UsageAnalysis.ClassUsage anonymous = analysis.getClasses().get(1);
+        assertThat(anonymous.getDeclaration()).isNull();
+        assertThat(anonymous.isInner()).isTrue();
+        assertThat(anonymous.getMethods().get(0).usesThis()).isTrue();
+    }
+
+    @Test
+    void analyzesEachClassOncePerExecutionContext() {
+        J.ClassDeclaration clazz = parse("""
+                    class Test {
+                      private String word;
+
+                      private String getWord() {
+                        return word;
+                      }
+                    }
+                """);
+        ExecutionContext ctx = new InMemoryExecutionContext();
+
+        UsageAnalysis analysis = UsageAnalysis.of(clazz, false, ctx);
+        assertThat(UsageAnalysis.of(clazz, false, ctx)).isSameAs(analysis);
+        assertThat(UsageAnalysis.of(clazz, true, ctx)).isNotSameAs(analysis);
+        assertThat(UsageAnalysis.of(clazz, false, new InMemoryExecutionContext())).isNotSameAs(analysis);
+
+        // a changed class keeps its ID, but must not be given the analysis of the original
+        J.ClassDeclaration changed = clazz.withBody(clazz.getBody().withStatements(clazz.getBody().getStatements().subList(0, 1)));
+        UsageAnalysis changedAnalysis = UsageAnalysis.of(changed, false, ctx);
+        assertThat(changedAnalysis).isNotSameAs(analysis);
+        assertThat(changedAnalysis.getClasses().get(0).getMethods()).isEmpty();
+    }
+}